@@ -0,0 +1,138 @@
+package org.brylex.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic documents: the same shape, size and seed always give the same bytes. Sizes are
+ * counted in elements, so that allocation per element is the profiler's allocation per operation divided by the size.
+ */
+public final class Documents {
+
+    public static final long SEED = 20131209L;
+
+    private static final String[] WORDS = {"alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel"};
+    private static final String[] KINDS = {"a", "b", "c", "d"};
+
+    private Documents() {
+    }
+
+    public enum Shape {
+
+        /**
+         * Records of three bound leaves directly below the root.
+         */
+        FLAT,
+
+        /**
+         * Records with their bound leaves sixteen levels down.
+         */
+        NESTED,
+
+        /**
+         * Records where three out of four elements are in branches no binding matches.
+         */
+        UNMATCHED,
+
+        /**
+         * Records with eight attributes each, selected by an attribute predicate and read through a start element.
+         */
+        ATTRIBUTES,
+
+        /**
+         * Records bound to sub-handlers, which bind their own children to nested sub-handlers.
+         */
+        SUB_HANDLERS
+    }
+
+    public static byte[] generate(Shape shape, int elements) {
+        return generate(shape, elements, SEED);
+    }
+
+    public static byte[] generate(Shape shape, int elements, long seed) {
+
+        Random random = new Random(seed);
+        StringBuilder xml = new StringBuilder(elements * 24);
+
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<doc>\n");
+
+        int count = 1;
+        for (int i = 0; count < elements; i++) {
+            switch (shape) {
+                case FLAT:
+                    count += flat(xml, random, i);
+                    break;
+                case NESTED:
+                    count += nested(xml, random, i);
+                    break;
+                case UNMATCHED:
+                    count += unmatched(xml, random, i);
+                    break;
+                case ATTRIBUTES:
+                    count += attributes(xml, random, i);
+                    break;
+                case SUB_HANDLERS:
+                    count += subHandlers(xml, random, i);
+                    break;
+            }
+        }
+
+        xml.append("</doc>\n");
+
+        return xml.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int flat(StringBuilder xml, Random random, int i) {
+        xml.append("  <item><id>").append(i).append("</id><name>").append(word(random)).append(' ').append(i)
+                .append("</name><amount>").append(amount(random)).append("</amount></item>\n");
+        return 4;
+    }
+
+    private static int nested(StringBuilder xml, Random random, int i) {
+        xml.append("  ");
+        for (int level = 0; level < 16; level++) {
+            xml.append("<level>");
+        }
+        xml.append("<id>").append(i).append("</id><name>").append(word(random)).append("</name>");
+        for (int level = 0; level < 16; level++) {
+            xml.append("</level>");
+        }
+        xml.append('\n');
+        return 18;
+    }
+
+    private static int unmatched(StringBuilder xml, Random random, int i) {
+        xml.append("  <item><id>").append(i).append("</id>");
+        xml.append("<audit><created>2013-12-09T10:15:30Z</created><by>").append(word(random)).append("</by>")
+                .append("<trail><entry>").append(word(random)).append("</entry><entry>").append(word(random)).append("</entry></trail></audit>");
+        xml.append("<extra><note>").append(word(random)).append(' ').append(word(random)).append("</note></extra></item>\n");
+        return 10;
+    }
+
+    private static int attributes(StringBuilder xml, Random random, int i) {
+        xml.append("  <item kind=\"").append(KINDS[random.nextInt(KINDS.length)]).append('"');
+        for (int a = 0; a < 7; a++) {
+            xml.append(" attr").append(a).append("=\"").append(word(random)).append('"');
+        }
+        xml.append("><id>").append(i).append("</id></item>\n");
+        return 2;
+    }
+
+    private static int subHandlers(StringBuilder xml, Random random, int i) {
+        xml.append("  <child><grandchild>").append(word(random)).append("</grandchild>");
+        int pets = random.nextInt(3);
+        for (int p = 0; p < pets; p++) {
+            xml.append("<pet><name>").append(word(random)).append("</name><age>").append(random.nextInt(20)).append("</age></pet>");
+        }
+        xml.append("<uncle>").append(word(random)).append("</uncle></child>\n");
+        return 3 + pets * 3;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String amount(Random random) {
+        return random.nextInt(100000) + "." + random.nextInt(10) + random.nextInt(10);
+    }
+}
@@ -0,0 +1,150 @@
+package org.brylex.benchmark;
+
+import org.brylex.parser.annotation.Path;
+
+import javax.xml.stream.events.StartElement;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One handler per {@link Documents.Shape}; each keeps a running sum of what it receives, so nothing bound is dead.
+ */
+public final class Handlers {
+
+    private Handlers() {
+    }
+
+    /**
+     * Creates handlers of the type {@link #forShape} returns for the shape, with a plain constructor call.
+     */
+    public static Supplier<Object> factoryForShape(Documents.Shape shape) {
+        switch (shape) {
+            case FLAT:
+                return FlatHandler::new;
+            case NESTED:
+                return NestedHandler::new;
+            case UNMATCHED:
+                return UnmatchedHandler::new;
+            case ATTRIBUTES:
+                return AttributeHandler::new;
+            default:
+                return RootHandler::new;
+        }
+    }
+
+    public static Class<?> forShape(Documents.Shape shape) {
+        switch (shape) {
+            case FLAT:
+                return FlatHandler.class;
+            case NESTED:
+                return NestedHandler.class;
+            case UNMATCHED:
+                return UnmatchedHandler.class;
+            case ATTRIBUTES:
+                return AttributeHandler.class;
+            default:
+                return RootHandler.class;
+        }
+    }
+
+    public static class FlatHandler {
+
+        public long ids;
+        public int names;
+        public BigDecimal amounts = BigDecimal.ZERO;
+
+        @Path("/doc/item/id")
+        public void id(long id) {
+            ids += id;
+        }
+
+        @Path("/doc/item/name")
+        public void name(String name) {
+            names += name.length();
+        }
+
+        @Path("/doc/item/amount")
+        public void amount(BigDecimal amount) {
+            amounts = amounts.add(amount);
+        }
+    }
+
+    public static class NestedHandler {
+
+        public long ids;
+        public int names;
+
+        @Path("/doc/level/level/level/level/level/level/level/level/level/level/level/level/level/level/level/level/id")
+        public void id(long id) {
+            ids += id;
+        }
+
+        @Path("/doc/level/level/level/level/level/level/level/level/level/level/level/level/level/level/level/level/name")
+        public void name(String name) {
+            names += name.length();
+        }
+    }
+
+    public static class UnmatchedHandler {
+
+        public long ids;
+
+        @Path("/doc/item/id")
+        public void id(long id) {
+            ids += id;
+        }
+    }
+
+    public static class AttributeHandler {
+
+        public long ids;
+        public int attributes;
+
+        @Path("/doc/item[@kind='a']/id")
+        public void id(long id) {
+            ids += id;
+        }
+
+        @Path("/doc/item")
+        public void item(StartElement element) {
+            attributes += element.getAttributeByName(new javax.xml.namespace.QName("attr0")).getValue().length();
+        }
+    }
+
+    public static class RootHandler {
+
+        public final List<ChildHandler> children = new ArrayList<>();
+
+        @Path("/doc/child")
+        public void child(ChildHandler child) {
+            children.add(child);
+        }
+    }
+
+    public static class ChildHandler {
+
+        @Path("/grandchild")
+        public String grandchild;
+
+        @Path("/uncle")
+        public String uncle;
+
+        public final List<PetHandler> pets = new ArrayList<>();
+
+        @Path("/pet")
+        public void pet(PetHandler pet) {
+            pets.add(pet);
+        }
+    }
+
+    public static class PetHandler {
+
+        @Path("/name")
+        public String name;
+
+        @Path("/age")
+        public int age;
+    }
+}
@@ -0,0 +1,105 @@
+package org.brylex.benchmark;
+
+import org.brylex.parser.PathParser;
+import org.brylex.parser.PushParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Parse throughput per document shape, size and input path. One operation parses one document of {@code elements}
+ * elements into a new handler, created with a plain constructor call; with {@code -prof gc}, {@code gc.alloc.rate.norm}
+ * divided by {@code elements} is the allocation per element, give or take that one handler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    public enum Input {
+        STREAM_READER, EVENT_READER, MAPPED_FILE, PUSH
+    }
+
+    @Param({"FLAT", "NESTED", "UNMATCHED", "ATTRIBUTES", "SUB_HANDLERS"})
+    public Documents.Shape shape;
+
+    @Param({"1000", "100000"})
+    public int elements;
+
+    @Param({"STREAM_READER", "EVENT_READER", "MAPPED_FILE", "PUSH"})
+    public Input input;
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    private byte[] document;
+    private java.nio.file.Path file;
+    private Supplier<Object> handlers;
+    private PathParser parser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        document = Documents.generate(shape, elements);
+        handlers = Handlers.factoryForShape(shape);
+        parser = new PathParser(Handlers.forShape(shape));
+        if (input == Input.MAPPED_FILE) {
+            file = Files.createTempFile("path-parser-benchmark", ".xml");
+            Files.write(file, document);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public Object parse() throws Exception {
+
+        Object handler = handlers.get();
+
+        switch (input) {
+            case STREAM_READER:
+                parser.parse(inputFactory.createXMLStreamReader(new ByteArrayInputStream(document)), handler);
+                break;
+            case EVENT_READER:
+                parser.parse(inputFactory.createXMLEventReader(new ByteArrayInputStream(document)), handler);
+                break;
+            case MAPPED_FILE:
+                parser.parse(file, handler);
+                break;
+            case PUSH:
+                PushParser push = parser.push(handler);
+                push.feed(ByteBuffer.wrap(document));
+                push.endOfInput();
+                break;
+            default:
+                throw new XMLStreamException("Unknown input [" + input + "].");
+        }
+
+        return handler;
+    }
+}
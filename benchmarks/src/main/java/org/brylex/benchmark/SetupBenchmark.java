@@ -0,0 +1,51 @@
+package org.brylex.benchmark;
+
+import org.brylex.parser.PathParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.stream.XMLInputFactory;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of setting a parser up, alone and together with parsing a small document, which is what code creating a
+ * parser per request pays. Binding plans are compiled once per class, so this measures everything but that.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SetupBenchmark {
+
+    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+    private byte[] document;
+
+    @Setup
+    public void setUp() {
+        document = Documents.generate(Documents.Shape.SUB_HANDLERS, 20);
+    }
+
+    @Benchmark
+    public PathParser newPathParser() {
+        return new PathParser(new Handlers.RootHandler());
+    }
+
+    @Benchmark
+    public Object newPathParserAndParse() throws Exception {
+        Handlers.RootHandler handler = new Handlers.RootHandler();
+        new PathParser(handler).parse(inputFactory.createXMLStreamReader(new ByteArrayInputStream(document)));
+        return handler;
+    }
+}
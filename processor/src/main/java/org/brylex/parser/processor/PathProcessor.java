@@ -0,0 +1,369 @@
+package org.brylex.parser.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the bindings of every handler class with {@code @Path} members: a {@code PathBindings} named after the
+ * handler with a {@code $PathBindings} suffix, which sets fields and calls methods directly, registered as a service so
+ * that path-parser finds it without scanning the handler. A handler whose bindings cannot be reached from generated
+ * code, such as private members, gets a warning and is left to be bound by reflection.
+ */
+@SupportedAnnotationTypes(PathProcessor.PATH)
+public class PathProcessor extends AbstractProcessor {
+
+    static final String PATH = "org.brylex.parser.annotation.Path";
+    static final String SUFFIX = "$PathBindings";
+
+    private static final String SERVICE = "META-INF/services/org.brylex.parser.PathBindings";
+
+    private final Set<String> generated = new LinkedHashSet<>();
+    private final Set<String> compiled = new LinkedHashSet<>();
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+        this.messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        if (roundEnv.processingOver()) {
+            writeService();
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            addCompiled(type);
+        }
+
+        TypeElement path = elements.getTypeElement(PATH);
+        if (path == null) {
+            return false;
+        }
+
+        Map<TypeElement, Set<Element>> handlers = new LinkedHashMap<>();
+        for (Element member : roundEnv.getElementsAnnotatedWith(path)) {
+            handlers.computeIfAbsent((TypeElement) member.getEnclosingElement(), type -> new LinkedHashSet<>()).add(member);
+        }
+
+        for (Map.Entry<TypeElement, Set<Element>> handler : handlers.entrySet()) {
+            if (check(handler.getKey(), handler.getValue())) {
+                generate(handler.getKey(), handler.getValue());
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Whether generated code can reach every binding of the handler. Methods taking neither a single parameter nor a
+     * range of characters are reported as errors, since they cannot be bound at all.
+     */
+    private boolean check(TypeElement handler, Set<Element> members) {
+
+        for (Element type = handler; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) type).getNestingKind();
+            if (nesting != NestingKind.TOP_LEVEL && nesting != NestingKind.MEMBER) {
+                return false;
+            }
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return reflective(handler, type, "is private");
+            }
+        }
+
+        boolean valid = true;
+        for (Element member : members) {
+
+            if (member.getKind() == ElementKind.METHOD && ((ExecutableElement) member).getParameters().size() != 1 && !isRange((ExecutableElement) member)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@Path methods take a single parameter, or the text as (char[], int, int).", member);
+                valid = false;
+            } else if (member.getKind() == ElementKind.METHOD && isRange((ExecutableElement) member) && (Boolean) value(path(member), "intern").getValue()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Only text bound as a String can be interned.", member);
+                valid = false;
+            } else if (member.getModifiers().contains(Modifier.PRIVATE)) {
+                valid &= reflective(handler, member, "is private");
+            } else if (member.getKind() == ElementKind.FIELD && member.getModifiers().contains(Modifier.FINAL)) {
+                valid &= reflective(handler, member, "is final");
+            } else if (member.getModifiers().contains(Modifier.STATIC)) {
+                valid &= reflective(handler, member, "is static");
+            }
+
+            TypeElement converter = converter(member);
+            if (converter != null && !constructible(converter)) {
+                valid &= reflective(handler, member, "has a converter without an accessible no-argument constructor");
+            }
+        }
+        return valid;
+    }
+
+    private boolean reflective(TypeElement handler, Element cause, String reason) {
+        messager.printMessage(Diagnostic.Kind.WARNING, "[" + cause + "] " + reason + ": bindings of [" + handler.getQualifiedName() + "] are found by reflection at runtime.", cause);
+        return false;
+    }
+
+    private static boolean constructible(TypeElement converter) {
+
+        for (Element type = converter; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        if (converter.getNestingKind() != NestingKind.TOP_LEVEL && !converter.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(converter.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement handler, Set<Element> members) {
+
+        String binaryName = elements.getBinaryName(handler).toString();
+        String packageName = elements.getPackageOf(handler).getQualifiedName().toString();
+        String className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String handlerName = erasure(handler.asType());
+
+        try (PrintWriter out = new PrintWriter(filer.createSourceFile(binaryName + SUFFIX, handler).openWriter())) {
+
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("@javax.annotation.processing.Generated(\"" + PathProcessor.class.getName() + "\")");
+            out.println("public final class " + className + " implements org.brylex.parser.PathBindings {");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<?> getType() {");
+            out.println("        return " + handlerName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+            out.println("    public void bind(org.brylex.parser.Binder binder) {");
+
+            for (Element member : members) {
+                out.println("        " + binding(handler, handlerName, member) + ";");
+            }
+
+            out.println("    }");
+            out.println("}");
+
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to generate bindings for [" + handler.getQualifiedName() + "]: " + e.getMessage(), handler);
+            return;
+        }
+
+        generated.add(binaryName + SUFFIX);
+    }
+
+    private String binding(TypeElement handler, String handlerName, Element member) {
+
+        AnnotationMirror path = path(member);
+        String value = literal((String) value(path, "value").getValue());
+        String flags = flags(path);
+
+        TypeElement converter = converter(member);
+        String converterName = converter != null ? "new " + erasure(converter.asType()) + "()" : "null";
+
+        String name = elements.getBinaryName(handler) + "." + member.getSimpleName();
+
+        // primitives without a converter are passed unboxed, through the binder's method named after their type; one asking
+        // for interning still goes through the boxed form, which rejects it as reflection does
+        boolean unboxed = converter == null && !(Boolean) value(path, "intern").getValue();
+
+        if (member.getKind() == ElementKind.FIELD) {
+            String type = erasure(member.asType());
+            if (unboxed && member.asType().getKind().isPrimitive()) {
+                return "binder." + type + "Field(" + value + ", " + flags + ", \"" + name + "\", "
+                        + "(handler, value) -> ((" + handlerName + ") handler)." + member.getSimpleName() + " = value)";
+            }
+            return "binder.field(" + value + ", " + flags + ", \"" + name + "\", " + type + ".class, " + converterName + ", "
+                    + "(handler, value) -> ((" + handlerName + ") handler)." + member.getSimpleName() + " = (" + type + ") value)";
+        }
+
+        if (isRange((ExecutableElement) member)) {
+            return "binder.range(" + value + ", " + flags + ", \"" + name + "()\", "
+                    + "(handler, buffer, start, length) -> ((" + handlerName + ") handler)." + member.getSimpleName() + "(buffer, start, length))";
+        }
+
+        VariableElement parameter = ((ExecutableElement) member).getParameters().get(0);
+        String type = erasure(parameter.asType());
+        if (unboxed && parameter.asType().getKind().isPrimitive()) {
+            return "binder." + type + "Method(" + value + ", " + flags + ", \"" + name + "()\", "
+                    + "(handler, value) -> ((" + handlerName + ") handler)." + member.getSimpleName() + "(value))";
+        }
+        return "binder.method(" + value + ", " + flags + ", \"" + name + "()\", " + type + ".class, " + converterName + ", "
+                + "(handler, value) -> ((" + handlerName + ") handler)." + member.getSimpleName() + "((" + type + ") value))";
+    }
+
+    /**
+     * Whether the method takes element text as a {@code (char[], int, int)} range.
+     */
+    private boolean isRange(ExecutableElement method) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        return parameters.size() == 3
+                && erasure(parameters.get(0).asType()).equals("char[]")
+                && parameters.get(1).asType().getKind() == TypeKind.INT
+                && parameters.get(2).asType().getKind() == TypeKind.INT;
+    }
+
+    /**
+     * The {@code Binder} flags matching the boolean elements of the annotation.
+     */
+    private String flags(AnnotationMirror path) {
+        StringBuilder flags = new StringBuilder();
+        for (String flag : new String[]{"once", "intern", "reuse"}) {
+            if ((Boolean) value(path, flag).getValue()) {
+                flags.append(flags.length() > 0 ? " | " : "").append("org.brylex.parser.Binder.").append(flag.toUpperCase(Locale.ROOT));
+            }
+        }
+        return flags.length() > 0 ? flags.toString() : "0";
+    }
+
+    private String erasure(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private AnnotationMirror path(Element member) {
+        for (AnnotationMirror annotation : member.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(PATH)) {
+                return annotation;
+            }
+        }
+        throw new IllegalStateException("No @Path on [" + member + "].");
+    }
+
+    /**
+     * Returns the converter named by the member's {@code @Path}, or {@code null} for the built-in conversion.
+     */
+    private TypeElement converter(Element member) {
+        TypeMirror type = (TypeMirror) value(path(member), "converter").getValue();
+        TypeElement converter = (TypeElement) ((DeclaredType) type).asElement();
+        return converter.getQualifiedName().contentEquals("org.brylex.parser.Converter") ? null : converter;
+    }
+
+    private AnnotationValue value(AnnotationMirror annotation, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        throw new IllegalStateException("No value [" + name + "] in [" + annotation + "].");
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void addCompiled(TypeElement type) {
+        compiled.add(elements.getBinaryName(type).toString());
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            addCompiled(nested);
+        }
+    }
+
+    /**
+     * Whether an earlier registration still belongs to a handler: one that exists, and that either was not compiled
+     * this time or got its bindings generated again.
+     */
+    private boolean isCurrent(String service) {
+
+        if (!service.endsWith(SUFFIX)) {
+            return false;
+        }
+        String handler = service.substring(0, service.length() - SUFFIX.length());
+        if (compiled.contains(handler)) {
+            return generated.contains(service);
+        }
+        return elements.getTypeElement(handler.replace('$', '.')) != null;
+    }
+
+    /**
+     * Registers the bindings generated in this compilation, keeping those an earlier, incremental one registered for
+     * handlers that still have them.
+     */
+    private void writeService() {
+
+        Set<String> services = new LinkedHashSet<>();
+        boolean registered = false;
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (BufferedReader reader = new BufferedReader(existing.openReader(true))) {
+                registered = true;
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (isCurrent(line.trim())) {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no earlier registrations
+        }
+        services.addAll(generated);
+
+        if (services.isEmpty() && !registered) {
+            return;
+        }
+
+        try (Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE).openWriter()) {
+            for (String service : services) {
+                writer.write(service);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Unable to register generated bindings: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.brylex.parser.processor;
+
+import org.brylex.parser.PathBindings;
+import org.brylex.parser.PathParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import javax.xml.stream.XMLInputFactory;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PathProcessorTest {
+
+    private static final String FEED = "package sample;\n" +
+            "\n" +
+            "import org.brylex.parser.Converter;\n" +
+            "import org.brylex.parser.annotation.Path;\n" +
+            "\n" +
+            "import javax.xml.stream.events.StartElement;\n" +
+            "import java.util.ArrayList;\n" +
+            "import java.util.List;\n" +
+            "import java.util.function.Supplier;\n" +
+            "\n" +
+            "public class Feed implements Supplier<String> {\n" +
+            "\n" +
+            "    public static class Upper implements Converter<String> {\n" +
+            "        public String convert(char[] buffer, int start, int length) {\n" +
+            "            return new String(buffer, start, length).toUpperCase();\n" +
+            "        }\n" +
+            "    }\n" +
+            "\n" +
+            "    public static class Item {\n" +
+            "        @Path(value = \"/title\", intern = true) String title;\n" +
+            "        @Path(value = \"/code\", converter = Upper.class) String code;\n" +
+            "        @Path(\"/sale\") boolean sale;\n" +
+            "        double price;\n" +
+            "\n" +
+            "        @Path(\"/price\")\n" +
+            "        void setPrice(double price) { this.price = price; }\n" +
+            "    }\n" +
+            "\n" +
+            "    @Path(\"/feed/title\") String title;\n" +
+            "    @Path(value = \"/feed/count\", once = true) long count;\n" +
+            "    @Path(\"/feed/flag\") char flag;\n" +
+            "    final List<Item> items = new ArrayList<>();\n" +
+            "    final List<String> titles = new ArrayList<>();\n" +
+            "    int starts;\n" +
+            "\n" +
+            "    @Path(value = \"/feed/item\", reuse = true)\n" +
+            "    void item(Item item) {\n" +
+            "        items.add(item);\n" +
+            "        titles.add(item.title);\n" +
+            "        starts += 100;\n" +
+            "    }\n" +
+            "\n" +
+            "    @Path(\"/feed\")\n" +
+            "    void start(StartElement element) { starts++; }\n" +
+            "\n" +
+            "    public String get() {\n" +
+            "        Item first = items.get(0);\n" +
+            "        return title + \"|\" + count + \"|\" + flag + \"|\" + starts + \"|\" + first.title + \"|\" + first.code + \"|\" + first.price + \"|\" + first.sale\n" +
+            "                + \"|\" + (items.get(1) == first) + \"|\" + (titles.get(1) == titles.get(0));\n" +
+            "    }\n" +
+            "}\n";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("path-processor");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testGeneratedBindings() throws Exception {
+
+        assertThat(compile("sample.Feed", FEED)).isEmpty();
+
+        String bindings = new String(Files.readAllBytes(directory.resolve("sample/Feed$PathBindings.java")), StandardCharsets.UTF_8);
+        assertThat(bindings).contains("binder.charField(\"/feed/flag\", 0, \"sample.Feed.flag\", (handler, value) -> ((sample.Feed) handler).flag = value)");
+        assertThat(bindings).contains("org.brylex.parser.Binder.ONCE");
+        assertThat(new String(Files.readAllBytes(directory.resolve("sample/Feed$Item$PathBindings.java")), StandardCharsets.UTF_8))
+                .contains("binder.doubleMethod(\"/price\", 0, \"sample.Feed$Item.setPrice()\", (handler, value) -> ((sample.Feed.Item) handler).setPrice(value))")
+                .contains("org.brylex.parser.Binder.INTERN")
+                .contains("binder.booleanField(\"/sale\", 0, \"sample.Feed$Item.sale\", (handler, value) -> ((sample.Feed.Item) handler).sale = value)")
+                .contains("new sample.Feed.Upper()");
+
+        String xml = "<feed>" +
+                "<title>Prices</title><count> 42 </count><count>7</count><flag>Y</flag>" +
+                "<item><title>Apple</title><code>ab-1</code><price> 2.5 </price><sale>true</sale></item>" +
+                "<item><title>Apple</title><code>cd-2</code><price>3</price></item>" +
+                "</feed>";
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, getClass().getClassLoader())) {
+
+            Class<?> type = loader.loadClass("sample.Feed");
+
+            List<String> generated = new ArrayList<>();
+            ServiceLoader.load(PathBindings.class, loader).forEach(provider -> generated.add(provider.getType().getName()));
+            assertThat(generated).containsExactlyInAnyOrder("sample.Feed", "sample.Feed$Item");
+
+            Object handler = type.getDeclaredConstructor().newInstance();
+            new PathParser(handler).parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+            // one item instance is reused, and emptied before the second element fills it again
+            assertThat(((Supplier<?>) handler).get()).isEqualTo("Prices|42|Y|201|Apple|CD-2|3.0|false|true|true");
+        }
+    }
+
+    @Test
+    public void testPrivateMembersLeftToReflection() throws Exception {
+
+        String source = "package sample;\n" +
+                "\n" +
+                "public class Hidden {\n" +
+                "    @org.brylex.parser.annotation.Path(\"/a\") private String a;\n" +
+                "}\n";
+
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = compile("sample.Hidden", source);
+
+        assertThat(diagnostics).hasSize(1);
+        assertThat(diagnostics.get(0).getKind()).isEqualTo(Diagnostic.Kind.WARNING);
+        assertThat(directory.resolve("sample/Hidden$PathBindings.java")).doesNotExist();
+    }
+
+    @Test
+    public void testStaleRegistrationsDropped() throws Exception {
+
+        Path service = directory.resolve("META-INF/services/org.brylex.parser.PathBindings");
+        Files.createDirectories(service.getParent());
+        Files.write(service, Arrays.asList("gone.Handler$PathBindings", "sample.Feed$PathBindings"), StandardCharsets.UTF_8);
+
+        assertThat(compile("sample.Feed", FEED)).isEmpty();
+
+        assertThat(Files.readAllLines(service, StandardCharsets.UTF_8)).containsExactly("sample.Feed$PathBindings", "sample.Feed$Item$PathBindings");
+    }
+
+    /**
+     * Compiles the source with the processor into the test's directory, returning the diagnostics reported.
+     */
+    private List<Diagnostic<? extends JavaFileObject>> compile(String className, String source) {
+
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-d", directory.toString(), "-s", directory.toString(), "-classpath", System.getProperty("java.class.path"));
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new PathProcessor()));
+
+        assertThat(task.call()).as("compiled: %s", diagnostics.getDiagnostics()).isTrue();
+        return diagnostics.getDiagnostics();
+    }
+}
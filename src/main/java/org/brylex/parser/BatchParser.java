@@ -0,0 +1,194 @@
+package org.brylex.parser;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses many small documents into new handler instances, one per document. All documents share one
+ * {@link XMLInputFactory}, the cached {@link BindingPlan} of the handler type and a pool of parse contexts, so the
+ * per-document cost is creating the reader and the handler. Documents are spread over the given executor; a
+ * virtual-thread-per-task executor works as well as a fixed pool.
+ * <p>
+ * A batch parser is thread-safe, provided the input factory may create readers concurrently, which holds for the JDK
+ * implementation and Woodstox.
+ */
+public final class BatchParser<T> {
+
+    private final Class<T> handlerType;
+    private final XMLInputFactory inputFactory;
+    private final InstanceFactory instanceFactory;
+    private final Executor executor;
+    private final ContextPool contexts;
+
+    public BatchParser(Class<T> handlerType) {
+        this(handlerType, XMLInputFactory.newInstance(), ConstructorInstanceFactory.INSTANCE, ForkJoinPool.commonPool());
+    }
+
+    public BatchParser(Class<T> handlerType, Executor executor) {
+        this(handlerType, XMLInputFactory.newInstance(), ConstructorInstanceFactory.INSTANCE, executor);
+    }
+
+    public BatchParser(Class<T> handlerType, XMLInputFactory inputFactory, InstanceFactory instanceFactory, Executor executor) {
+        this(handlerType, inputFactory, instanceFactory, executor, null);
+    }
+
+    public BatchParser(Class<T> handlerType, XMLInputFactory inputFactory, InstanceFactory instanceFactory, Executor executor, ParseListener listener) {
+        this.handlerType = handlerType;
+        this.inputFactory = inputFactory;
+        this.instanceFactory = instanceFactory != null ? instanceFactory : ConstructorInstanceFactory.INSTANCE;
+        this.executor = executor;
+        this.contexts = new ContextPool(BindingPlan.of(handlerType).getRoot(), this.instanceFactory, listener);
+    }
+
+    /**
+     * Parses one document on the calling thread.
+     */
+    public T parse(byte[] document) {
+        return parse(document, new ByteArrayInputStream(document), null);
+    }
+
+    /**
+     * Parses one document on the calling thread, closing the stream afterwards.
+     */
+    public T parse(InputStream stream) {
+        return parse(stream, stream, null);
+    }
+
+    /**
+     * Parses one document on the calling thread, closing the reader afterwards.
+     */
+    public T parse(Reader reader) {
+        return parse(reader, null, reader);
+    }
+
+    /**
+     * Parses one document file on the calling thread.
+     */
+    public T parse(java.nio.file.Path file) {
+        try {
+            return parse(file, Files.newInputStream(file), null);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to parse document [" + file + "].", e);
+        }
+    }
+
+    private T parse(Object input, InputStream stream, Reader reader) {
+
+        T handler = instanceFactory.newInstance(handlerType);
+
+        try (InputStream closedStream = stream; Reader closedReader = reader) {
+
+            XMLStreamReader xmlStreamReader = reader != null ? inputFactory.createXMLStreamReader(reader) : inputFactory.createXMLStreamReader(stream);
+
+            ParseContext context = contexts.acquire(handler);
+            try {
+                context.run(new StreamReaderCursor(xmlStreamReader));
+            } finally {
+                contexts.release(context);
+                xmlStreamReader.close();
+            }
+
+        } catch (XMLStreamException | IOException e) {
+            throw new RuntimeException("Unable to parse document [" + input + "].", e);
+        }
+
+        return handler;
+    }
+
+    /**
+     * Parses the document on the executor.
+     */
+    public CompletableFuture<T> submit(byte[] document) {
+        return CompletableFuture.supplyAsync(() -> parse(document), executor);
+    }
+
+    /**
+     * Parses the document on the executor, closing the stream afterwards.
+     */
+    public CompletableFuture<T> submit(InputStream stream) {
+        return CompletableFuture.supplyAsync(() -> parse(stream), executor);
+    }
+
+    /**
+     * Parses the document on the executor, closing the reader afterwards.
+     */
+    public CompletableFuture<T> submit(Reader reader) {
+        return CompletableFuture.supplyAsync(() -> parse(reader), executor);
+    }
+
+    /**
+     * Parses the document file on the executor.
+     */
+    public CompletableFuture<T> submit(java.nio.file.Path file) {
+        return CompletableFuture.supplyAsync(() -> parse(file), executor);
+    }
+
+    /**
+     * Parses all documents on the executor and returns their handlers in input order. Fails with the first error
+     * encountered, after all documents have been attempted.
+     */
+    public List<T> parseAll(Collection<byte[]> documents) {
+        return parseAll(documents, ByteArrayInputStream::new);
+    }
+
+    /**
+     * As {@link #parseAll(Collection)}, for documents of any kind the opener turns into streams, such as files with
+     * {@code Files::newInputStream}. Each document is opened on the thread parsing it, and its stream closed
+     * afterwards.
+     */
+    public <I> List<T> parseAll(Collection<? extends I> inputs, Opener<? super I> opener) {
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            futures.add(CompletableFuture.supplyAsync(() -> open(input, opener), executor));
+        }
+
+        List<T> handlers = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+
+        for (CompletableFuture<T> future : futures) {
+            try {
+                handlers.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return handlers;
+    }
+
+    private <I> T open(I input, Opener<? super I> opener) {
+        try {
+            return parse(input, opener.open(input), null);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to parse document [" + input + "].", e);
+        }
+    }
+
+    /**
+     * Opens a document for {@link #parseAll(Collection, Opener)}.
+     */
+    @FunctionalInterface
+    public interface Opener<I> {
+        InputStream open(I input) throws IOException;
+    }
+}
@@ -0,0 +1,185 @@
+package org.brylex.parser;
+
+import org.brylex.parser.annotation.Path;
+
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Receives the bindings declared by {@link PathBindings}. Each binding names the path and flags of its {@link Path},
+ * the member it targets, and a function setting the field or calling the method on a handler. What a method binds to
+ * follows from its parameter type, exactly as for annotated handlers bound by reflection. Primitive fields and methods
+ * without a converter take a function of their own primitive type, so that their values are passed without boxing,
+ * through methods named after that type such as {@link #intField} and {@link #intMethod}.
+ */
+public final class Binder {
+
+    /** Flags of a binding, as set on its {@link Path}. */
+    public static final int ONCE = 1;
+    public static final int INTERN = 2;
+    public static final int REUSE = 4;
+
+    private final BindingPlan plan;
+
+    Binder(BindingPlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Binds the text of the element at the path to a field.
+     *
+     * @param flags     the binding's {@link #ONCE} and {@link #INTERN} flags
+     * @param name      the field, as reported to listeners
+     * @param type      the field's type
+     * @param converter the converter of the binding, or {@code null} to use a built-in one
+     */
+    public void field(String path, int flags, String name, Class<?> type, Converter<?> converter, BiConsumer<Object, Object> target) {
+        plan.field(path, new GeneratedTextInvoker(name, type, target, converter, false, (flags & INTERN) != 0), (flags & ONCE) != 0);
+    }
+
+    /**
+     * Binds the element at the path to a single-argument method.
+     *
+     * @param flags     the binding's {@link #ONCE}, {@link #INTERN} and {@link #REUSE} flags
+     * @param name      the method, as reported to listeners
+     * @param type      the method's parameter type
+     * @param converter the converter of the binding, or {@code null} to use a built-in one
+     */
+    public void method(String path, int flags, String name, Class<?> type, Converter<?> converter, BiConsumer<Object, Object> target) {
+        boolean intern = (flags & INTERN) != 0;
+        plan.apply(path, type, converter != null || intern, () -> new GeneratedInvoker(name, target), () -> new GeneratedTextInvoker(name, type, target, converter, true, intern), (flags & ONCE) != 0, (flags & REUSE) != 0);
+    }
+
+    /**
+     * Binds the text of the element at the path to an {@code int} field.
+     *
+     * @param flags the binding's {@link #ONCE} flag
+     * @param name  the field, as reported to listeners
+     */
+    public void intField(String path, int flags, String name, ObjIntConsumer<Object> target) {
+        field(path, flags, name, int.class, target);
+    }
+
+    public void longField(String path, int flags, String name, ObjLongConsumer<Object> target) {
+        field(path, flags, name, long.class, target);
+    }
+
+    public void doubleField(String path, int flags, String name, ObjDoubleConsumer<Object> target) {
+        field(path, flags, name, double.class, target);
+    }
+
+    public void floatField(String path, int flags, String name, ObjFloatConsumer target) {
+        field(path, flags, name, float.class, target);
+    }
+
+    public void shortField(String path, int flags, String name, ObjShortConsumer target) {
+        field(path, flags, name, short.class, target);
+    }
+
+    public void byteField(String path, int flags, String name, ObjByteConsumer target) {
+        field(path, flags, name, byte.class, target);
+    }
+
+    public void booleanField(String path, int flags, String name, ObjBooleanConsumer target) {
+        field(path, flags, name, boolean.class, target);
+    }
+
+    public void charField(String path, int flags, String name, ObjCharConsumer target) {
+        field(path, flags, name, char.class, target);
+    }
+
+    private void field(String path, int flags, String name, Class<?> type, Object target) {
+        plan.field(path, new GeneratedTextInvoker(name, type, target, false), (flags & ONCE) != 0);
+    }
+
+    /**
+     * Binds the text of the element at the path to a method taking an {@code int}.
+     *
+     * @param flags the binding's {@link #ONCE} flag
+     * @param name  the method, as reported to listeners
+     */
+    public void intMethod(String path, int flags, String name, ObjIntConsumer<Object> target) {
+        method(path, flags, name, int.class, target);
+    }
+
+    public void longMethod(String path, int flags, String name, ObjLongConsumer<Object> target) {
+        method(path, flags, name, long.class, target);
+    }
+
+    public void doubleMethod(String path, int flags, String name, ObjDoubleConsumer<Object> target) {
+        method(path, flags, name, double.class, target);
+    }
+
+    public void floatMethod(String path, int flags, String name, ObjFloatConsumer target) {
+        method(path, flags, name, float.class, target);
+    }
+
+    public void shortMethod(String path, int flags, String name, ObjShortConsumer target) {
+        method(path, flags, name, short.class, target);
+    }
+
+    public void byteMethod(String path, int flags, String name, ObjByteConsumer target) {
+        method(path, flags, name, byte.class, target);
+    }
+
+    public void booleanMethod(String path, int flags, String name, ObjBooleanConsumer target) {
+        method(path, flags, name, boolean.class, target);
+    }
+
+    public void charMethod(String path, int flags, String name, ObjCharConsumer target) {
+        method(path, flags, name, char.class, target);
+    }
+
+    private void method(String path, int flags, String name, Class<?> type, Object target) {
+        plan.apply(path, NodeType.END_ELEMENT, new GeneratedTextInvoker(name, type, target, true), (flags & ONCE) != 0);
+    }
+
+    /**
+     * Binds the text of the element at the path to a method taking it as a {@code (char[], int, int)} range.
+     *
+     * @param flags the binding's {@link #ONCE} flag
+     * @param name  the method, as reported to listeners
+     */
+    public void range(String path, int flags, String name, Range target) {
+        plan.apply(path, NodeType.END_ELEMENT, new GeneratedTextInvoker(name, target), (flags & ONCE) != 0);
+    }
+
+    /**
+     * Calls a method taking element text as a range of the parser's buffer, which is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface Range {
+        void accept(Object handler, char[] buffer, int start, int length);
+    }
+
+    /**
+     * Sets a {@code float} field or calls a method taking one; as {@link ObjIntConsumer} for the primitives the JDK
+     * has no such interface for.
+     */
+    @FunctionalInterface
+    public interface ObjFloatConsumer {
+        void accept(Object handler, float value);
+    }
+
+    @FunctionalInterface
+    public interface ObjShortConsumer {
+        void accept(Object handler, short value);
+    }
+
+    @FunctionalInterface
+    public interface ObjByteConsumer {
+        void accept(Object handler, byte value);
+    }
+
+    @FunctionalInterface
+    public interface ObjBooleanConsumer {
+        void accept(Object handler, boolean value);
+    }
+
+    @FunctionalInterface
+    public interface ObjCharConsumer {
+        void accept(Object handler, char value);
+    }
+}
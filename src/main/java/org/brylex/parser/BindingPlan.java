@@ -0,0 +1,381 @@
+package org.brylex.parser;
+
+import org.brylex.parser.annotation.Path;
+import org.brylex.util.Tree;
+
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The {@link Path} bindings of a handler class, compiled once and cached per class. A plan is immutable once built
+ * and may be shared freely between threads; {@link #bind(Object)} attaches it to a handler instance for parsing.
+ * <p>
+ * Bindings are taken from the handler's {@link PathBindings} if the annotation processor generated them, and found
+ * by reflection otherwise.
+ */
+public final class BindingPlan {
+
+    private static final ClassValue<BindingPlan> PLANS = new ClassValue<BindingPlan>() {
+        @Override
+        protected BindingPlan computeValue(Class<?> type) {
+            return new BindingPlan(type);
+        }
+    };
+
+    /** Bindings firing at most once are tracked in one bit each per handler. */
+    static final int MAX_ONCE = Long.SIZE;
+
+    private final Class<?> type;
+    private final List<Class<?>> types;
+    private final Tree<Node> tree;
+    private final State root;
+
+    // set the fields bound by the plan back to their defaults, for handlers refilled per element
+    private final List<MethodHandle> resets = new ArrayList<>();
+
+    private BindingPlan(Class<?> type) {
+        this.type = type;
+        this.types = Collections.singletonList(type);
+        this.tree = new Tree<>(new Node("/", NodeType.START_DOCUMENT));
+
+        PathBindings bindings = generated(type);
+        if (bindings != null) {
+            bindings.bind(new Binder(this));
+        } else {
+            reflect(type);
+        }
+
+        this.root = compile(tree);
+    }
+
+    private BindingPlan(String path, Class<?> recordType, Invoker sink) {
+        this.type = Object.class;
+        this.types = Collections.singletonList(type);
+        this.tree = new Tree<>(new Node("/", NodeType.START_DOCUMENT));
+
+        apply(path, NodeType.START_ELEMENT, new SubHandlerInvoker(sink, recordType), false);
+
+        this.root = compile(tree);
+    }
+
+    private BindingPlan(List<Class<?>> types) {
+        this.type = Object[].class;
+        this.types = Collections.unmodifiableList(new ArrayList<>(types));
+        this.tree = null;
+
+        List<State> roots = new ArrayList<>();
+        List<Invoker> once = new ArrayList<>();
+        int bindings = 0;
+        for (int slot = 0; slot < types.size(); slot++) {
+            Tree<Node> tree = of(types.get(slot)).tree;
+            State root = new State("/", null, 0);
+            compile(tree, root, slot, once);
+            roots.add(root);
+            bindings += bindings(tree);
+        }
+
+        this.root = stopping(Determinizer.determinize(roots), once.size(), bindings);
+    }
+
+    static BindingPlan of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    /**
+     * Compiles one plan for several handler types, so that a single pass over a document feeds all of them. Bindings
+     * on the same element are kept in type order, and each fires on the handler of its own type, which a parse is
+     * given as an array indexed like the types.
+     */
+    static BindingPlan merge(List<Class<?>> types) {
+        return new BindingPlan(types);
+    }
+
+    /**
+     * Compiles a plan binding every element at the given path to a new instance of the record type, which is handed
+     * to the sink once the element ends.
+     */
+    static BindingPlan forRecords(String path, Class<?> recordType, Invoker sink) {
+        return new BindingPlan(path, recordType, sink);
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * The handler types of a merged plan, or only {@link #getType()}.
+     */
+    List<Class<?>> getTypes() {
+        return types;
+    }
+
+    boolean isMerged() {
+        return tree == null;
+    }
+
+    String getTypeNames() {
+        StringBuilder builder = new StringBuilder();
+        for (Class<?> type : types) {
+            builder.append(builder.length() > 0 ? ", " : "").append(type.getName());
+        }
+        return builder.toString();
+    }
+
+    public PathParser bind(Object handler) {
+        return bind(handler, ConstructorInstanceFactory.INSTANCE);
+    }
+
+    public PathParser bind(Object handler, InstanceFactory instanceFactory) {
+
+        if (!type.isInstance(handler)) {
+            throw new IllegalArgumentException("Handler [" + handler + "] is not an instance of [" + type.getName() + "].");
+        }
+
+        return new PathParser(this, () -> handler, instanceFactory, null);
+    }
+
+    State getRoot() {
+        return root;
+    }
+
+    /**
+     * Compiles the tree into states, made deterministic if any path has a {@code *} or {@code //} step.
+     */
+    private static State compile(Tree<Node> tree) {
+        State root = new State("/", null, 0);
+        List<Invoker> once = new ArrayList<>();
+        boolean wildcards = compile(tree, root, -1, once);
+        return stopping(wildcards ? Determinizer.determinize(root) : root, once.size(), bindings(tree));
+    }
+
+    /**
+     * @param slot the index of the tree's handler in a merged plan, or -1
+     * @param once collects the invokers firing at most once, numbering them
+     */
+    private static boolean compile(Tree<Node> tree, State state, int slot, List<Invoker> once) {
+
+        boolean wildcards = false;
+        for (Tree<Node> subTree : tree.getSubTrees()) {
+
+            Node node = subTree.getHead();
+
+            State child = state.child(node.getStep());
+            for (Invoker invoker : node.getInvokers()) {
+
+                int number = -1;
+                if (node.isOnce(invoker)) {
+                    number = once.size();
+                    once.add(invoker);
+                }
+
+                if (node.getType() == NodeType.START_ELEMENT) {
+                    child.addStartInvoker(invoker, slot, number);
+                } else {
+                    child.addEndInvoker(invoker, slot, number);
+                }
+            }
+
+            wildcards |= node.getStep().isWildcard() || node.getStep().isDescendant();
+            wildcards |= compile(subTree, child, slot, once);
+        }
+        return wildcards;
+    }
+
+    /**
+     * Lets parsing stop early once every binding has fired, if all of them fire at most once.
+     */
+    private static State stopping(State root, int once, int bindings) {
+        if (once > MAX_ONCE) {
+            throw new IllegalArgumentException("At most " + MAX_ONCE + " bindings of a plan may fire only once, found " + once + ".");
+        }
+        if (once > 0 && once == bindings) {
+            root.setStopAfter(once);
+        }
+        return root;
+    }
+
+    private static int bindings(Tree<Node> tree) {
+        int count = 0;
+        for (Tree<Node> subTree : tree.getSubTrees()) {
+            count += subTree.getHead().getInvokers().size() + bindings(subTree);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the bindings generated at build time for the type, or {@code null} if it has none.
+     */
+    private static PathBindings generated(Class<?> type) {
+
+        // looked up by name rather than through the service registrations, so that a stale registration of another
+        // handler cannot break this one
+        String name = type.getName() + "$PathBindings";
+        Class<?> generated;
+        try {
+            generated = Class.forName(name, false, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        if (!PathBindings.class.isAssignableFrom(generated)) {
+            throw new IllegalArgumentException("Bindings [" + name + "] do not implement [" + PathBindings.class.getName() + "].");
+        }
+
+        PathBindings bindings;
+        try {
+            bindings = (PathBindings) generated.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to create bindings [" + name + "].", e);
+        }
+        if (bindings.getType() != type) {
+            throw new IllegalArgumentException("Bindings [" + name + "] are for [" + bindings.getType().getName() + "], not [" + type.getName() + "].");
+        }
+        return bindings;
+    }
+
+    private void reflect(Class<?> type) {
+
+        for (Method method : type.getDeclaredMethods()) {
+
+            Path path = method.getAnnotation(Path.class);
+            if (path != null) {
+                apply(path, method);
+            }
+        }
+
+        for (Field field : type.getDeclaredFields()) {
+
+            Path path = field.getAnnotation(Path.class);
+            if (path != null) {
+                apply(path, field);
+            }
+        }
+    }
+
+    private void apply(Path path, Field field) {
+        field(path.value(), new FieldInvoker(field, converter(path), path.intern()), path.once());
+    }
+
+    private void apply(Path path, Method method) {
+
+        if (isRange(method.getParameterTypes())) {
+            apply(path.value(), NodeType.END_ELEMENT, new SetterInvoker(method, converter(path), path.intern()), path.once());
+        } else if (method.getParameterCount() == 1) {
+            apply(path.value(), method.getParameterTypes()[0], path.converter() != Converter.class || path.intern(), () -> new MethodInvoker(method), () -> new SetterInvoker(method, converter(path), path.intern()), path.once(), path.reuse());
+        } else {
+            throw new IllegalArgumentException("Method [" + method + "] must take a single parameter, or the text as (char[], int, int).");
+        }
+    }
+
+    private static boolean isRange(Class<?>[] parameterTypes) {
+        return parameterTypes.length == 3 && parameterTypes[0] == char[].class && parameterTypes[1] == int.class && parameterTypes[2] == int.class;
+    }
+
+    /**
+     * Binds a single-argument method according to its parameter type: to the start or end of the element, to its text
+     * if the text can be converted to that type, or else to a sub-handler of that type.
+     *
+     * @param converted whether the binding names its own converter or asks for interning, and so binds to text
+     * @param reuse     whether a sub-handler instance is reused for every element it binds
+     */
+    void apply(String path, Class<?> parameterType, boolean converted, Supplier<Invoker> invoker, Supplier<TextInvoker> setter, boolean once, boolean reuse) {
+
+        if (StartElement.class.isAssignableFrom(parameterType)) {
+            apply(path, NodeType.START_ELEMENT, invoker.get(), once);
+        } else if (EndElement.class.isAssignableFrom(parameterType)) {
+            apply(path, NodeType.END_ELEMENT, invoker.get(), once);
+        } else if (converted || TextInvoker.isConvertible(parameterType)) {
+            apply(path, NodeType.END_ELEMENT, setter.get(), once);
+        } else {
+            apply(path, NodeType.START_ELEMENT, new SubHandlerInvoker(invoker.get(), parameterType, reuse), once);
+        }
+    }
+
+    /**
+     * Binds the text of an element to a field, which is reset along with the plan's other fields.
+     */
+    void field(String path, TextInvoker invoker, boolean once) {
+        apply(path, NodeType.END_ELEMENT, invoker, once);
+        resets.add(invoker.reset());
+    }
+
+    /**
+     * Sets every field bound by the plan back to its default value, so that the handler can be filled again.
+     */
+    void reset(Object handler) {
+        try {
+            for (MethodHandle reset : resets) {
+                reset.invokeExact(handler);
+            }
+        } catch (Throwable e) {
+            throw new RuntimeException("Unable to reset handler [" + handler + "].", e);
+        }
+    }
+
+    void apply(String path, NodeType type, Invoker invoker, boolean once) {
+
+        final LinkedList<String> nodes = Step.split(path);
+        final String leafNode = nodes.removeLast();
+        final Tree<Node> trunk = buildTrunk(nodes);
+
+        applyInvoker(trunk, new Node(leafNode, type), invoker, once);
+    }
+
+    private static Converter<?> converter(Path path) {
+
+        if (path.converter() == Converter.class) {
+            return null;
+        }
+
+        try {
+            return path.converter().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to create converter [" + path.converter().getName() + "].", e);
+        }
+    }
+
+    private void applyInvoker(Tree<Node> trunk, Node node, Invoker invoker, boolean once) {
+        Tree<Node> t = trunk.getTree(node);
+        if (t == null) {
+            t = trunk.addLeaf(node);
+        }
+        if (once) {
+            t.getHead().addOnce(invoker);
+        } else {
+            t.getHead().add(invoker);
+        }
+    }
+
+    private Tree<Node> buildTrunk(LinkedList<String> nodes) {
+        Tree<Node> parent = tree;
+        for (String step : nodes) {
+
+            if (step.length() == 0) {
+                continue;
+            }
+
+            Node node = new Node(step, NodeType.START_ELEMENT);
+
+            Tree<Node> t = parent.getTree(node);
+            if (t == null) {
+                parent = parent.addLeaf(node);
+            } else {
+                parent = t;
+            }
+        }
+        return parent;
+    }
+
+    @Override
+    public String toString() {
+        return "BindingPlan(" + getTypeNames() + ")" + (tree != null ? "\n" + tree : "");
+    }
+}
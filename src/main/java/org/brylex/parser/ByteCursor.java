@@ -0,0 +1,1273 @@
+package org.brylex.parser;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * {@link Cursor} that tokenizes UTF-8 (or ASCII) bytes itself, instead of decoding through a {@link java.io.Reader}
+ * into a StAX implementation. Names are looked up in a symbol table by their bytes, so a name seen before costs neither
+ * decoding nor allocation and comes back as the interned string the compiled states compare by identity. Text and
+ * attribute values stay bytes until a binding asks for them, and skipped subtrees are only scanned for tag boundaries.
+ * <p>
+ * Subclasses supply the bytes through {@link #fill(int)}. Documents that are not well-formed are rejected as a StAX
+ * parser would: mismatched end tags, duplicate attributes, undeclared entities, references to characters XML does not
+ * allow, malformed UTF-8 and names, {@code ]]>} in text, and content other than whitespace, comments and processing
+ * instructions outside the root element, each reported with the byte offset as its {@link Location}. DTDs are skipped
+ * and only the predefined entities are expanded; skipped subtrees are only checked for tag boundaries.
+ * {@link #hasNext()} reads ahead, so the data of the current event is valid until the next call to either method.
+ */
+abstract class ByteCursor implements Cursor {
+
+    private static final int NEED_INPUT = -1;
+    private static final int NONE = 0;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+    private int limit;
+    private int position;
+    // offset in the input of the buffer's first byte
+    private long offset;
+
+    private int eventType = XMLStreamConstants.START_DOCUMENT;
+    private int lookahead = NONE;
+    private boolean begun;
+    private boolean rootClosed;
+    private boolean pendingEnd;
+    private int skipDepth;
+
+    private String[] symbols = new String[256];
+    private byte[][] symbolBytes = new byte[256][];
+    private int symbolCount;
+
+    // open elements; index 0 is the document
+    private String[] localNames = new String[16];
+    private String[] prefixes = new String[16];
+    private String[] namespaceURIs = new String[16];
+    private int[] namespaceMarks = new int[16];
+    private int depth;
+    private int element;
+
+    private String[] namespacePrefixes = new String[8];
+    private String[] namespaceValues = new String[8];
+    private int namespaceCount;
+
+    // attributes of the current start element
+    private String[] attributeNames = new String[8];
+    private String[] attributePrefixes = new String[8];
+    private String[] attributeNamespaces = new String[8];
+    private String[] attributeValues = new String[8];
+    private int[] attributeStarts = new int[8];
+    private int[] attributeEnds = new int[8];
+    private int attributeCount;
+
+    private int textStart;
+    private int textEnd;
+    private int textScanned;
+    private boolean cdata;
+    private char[] text = new char[256];
+    private int textLength = -1;
+
+    private String scannedPrefix;
+    private String scannedLocalName;
+
+    private XMLEventFactory eventFactory;
+
+    private ParseListener listener;
+    // index in the buffer up to which bytes have been reported to the listener
+    private int counted;
+
+    /**
+     * Makes more input available, keeping the bytes from index {@code keep} of the current buffer.
+     *
+     * @return the index the byte at {@code keep} has moved to, or {@code -1} if no more input is available right now
+     */
+    abstract int fill(int keep) throws XMLStreamException;
+
+    /**
+     * Whether all input has been supplied, so that running out of bytes means the end of the document.
+     */
+    abstract boolean isComplete();
+
+    /**
+     * Whether the content after the root element is read and checked, rather than the document ending with the root.
+     */
+    boolean readsEpilog() {
+        return true;
+    }
+
+    final ByteBuffer buffer() {
+        return buffer;
+    }
+
+    final void input(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        if (lookahead == NONE) {
+            if (eventType == XMLStreamConstants.END_DOCUMENT) {
+                return false;
+            }
+            int event = advance();
+            if (event == NEED_INPUT) {
+                return false;
+            }
+            lookahead = event;
+        }
+        return true;
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No complete token available.");
+        }
+        eventType = lookahead;
+        lookahead = NONE;
+        return eventType;
+    }
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public void setListener(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reports the bytes consumed after parsing stopped early, up to the current token.
+     */
+    @Override
+    public void close() {
+        countBytes(position);
+    }
+
+    /**
+     * Reports the bytes of the buffer before {@code end} not reported yet.
+     */
+    private void countBytes(int end) {
+        if (listener != null && end > counted) {
+            listener.bytesRead(end - counted);
+        }
+        counted = end;
+    }
+
+    /**
+     * Marks the current start element as skipped. Its content is passed over, unparsed, by the following
+     * {@link #hasNext()}, which may take several rounds of input.
+     */
+    @Override
+    public void skipElement() {
+        if (pendingEnd) {
+            pendingEnd = false;
+            pop();
+        } else {
+            skipDepth = 1;
+        }
+    }
+
+    private int advance() throws XMLStreamException {
+        for (; ; ) {
+
+            int event = scan();
+            if (event > NONE) {
+                if (event == XMLStreamConstants.END_DOCUMENT) {
+                    countBytes(position);
+                }
+                return event;
+            }
+            if (event == NONE) {
+                continue;
+            }
+
+            countBytes(position);
+            int moved = fill(position);
+            if (moved >= 0) {
+                offset += position - moved;
+                position = moved;
+                counted = moved;
+                continue;
+            }
+
+            if (!isComplete()) {
+                return NEED_INPUT;
+            }
+            // anything left is either an unfinished token or whitespace that scanText has already checked
+            if (depth > 0 || skipDepth > 0 || !rootClosed || position < limit && buffer.get(position) == '<') {
+                throw error("Unexpected end of input.", limit);
+            }
+            countBytes(limit);
+            return XMLStreamConstants.END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Scans one token from {@link #position}, which only moves past complete tokens.
+     *
+     * @return the event type, {@link #NONE} for a token that is not reported, or {@link #NEED_INPUT}
+     */
+    private int scan() throws XMLStreamException {
+
+        if (pendingEnd) {
+            pendingEnd = false;
+            pop();
+            return XMLStreamConstants.END_ELEMENT;
+        }
+        if (skipDepth > 0) {
+            return skip() ? NONE : NEED_INPUT;
+        }
+        if (rootClosed && !readsEpilog()) {
+            return XMLStreamConstants.END_DOCUMENT;
+        }
+        if (!begun) {
+            return begin();
+        }
+
+        int p = position;
+        if (p >= limit) {
+            return NEED_INPUT;
+        }
+        if (buffer.get(p) != '<') {
+            return scanText(p);
+        }
+        if (p + 1 >= limit) {
+            return NEED_INPUT;
+        }
+
+        switch (buffer.get(p + 1)) {
+            case '/':
+                return scanEndTag(p);
+            case '!':
+                return scanMarkup(p);
+            case '?':
+                return scanProcessingInstruction(p);
+            default:
+                return scanStartTag(p);
+        }
+    }
+
+    private int begin() throws XMLStreamException {
+
+        if (limit - position < 3 && !isComplete()) {
+            return NEED_INPUT;
+        }
+
+        int first = limit > position ? buffer.get(position) & 0xFF : -1;
+        int second = limit > position + 1 ? buffer.get(position + 1) & 0xFF : -1;
+        int third = limit > position + 2 ? buffer.get(position + 2) & 0xFF : -1;
+
+        if (first == 0xEF && second == 0xBB && third == 0xBF) {
+            position += 3;
+        } else if (first == 0xFE && second == 0xFF || first == 0xFF && second == 0xFE || first == 0 || second == 0) {
+            throw error("Only UTF-8 and ASCII input is supported here; use an XMLStreamReader instead.", position);
+        }
+
+        begun = true;
+        return NONE;
+    }
+
+    private int scanText(int p) throws XMLStreamException {
+
+        // text arriving in many small rounds of input is not searched again from its start each time
+        int end = p + textScanned;
+        for (; end < limit; end++) {
+
+            byte b = buffer.get(end);
+            if (b == '<') {
+                break;
+            }
+            if (depth == 0 && !isWhitespace(b)) {
+                throw error("Text is not allowed outside the root element.", end);
+            }
+            if (b == '&') {
+                int semicolon = indexOf(';', end + 1);
+                if (semicolon < 0) {
+                    textScanned = end - p;
+                    return NEED_INPUT;
+                }
+                checkReference(end + 1, semicolon);
+                end = semicolon;
+            } else if (b == '>' && end >= p + 2 && buffer.get(end - 1) == ']' && buffer.get(end - 2) == ']') {
+                throw error("The sequence ']]>' is not allowed in text.", end - 2);
+            } else if (b < 0) {
+                int length = sequence(end);
+                if (length < 0) {
+                    textScanned = end - p;
+                    return NEED_INPUT;
+                }
+                end += length - 1;
+            }
+        }
+        if (end >= limit) {
+            textScanned = limit - p;
+            return NEED_INPUT;
+        }
+
+        textScanned = 0;
+        position = end;
+        if (depth == 0) {
+            return NONE;
+        }
+
+        textStart = p;
+        textEnd = end;
+        textLength = -1;
+        cdata = false;
+        return XMLStreamConstants.CHARACTERS;
+    }
+
+    private int scanStartTag(int p) throws XMLStreamException {
+
+        if (rootClosed) {
+            throw error("Only one root element is allowed.", p);
+        }
+
+        int marks = namespaceCount;
+        attributeCount = 0;
+
+        int i = scanName(p + 1);
+        if (i < 0) {
+            return NEED_INPUT;
+        }
+        String prefix = scannedPrefix;
+        String localName = scannedLocalName;
+
+        boolean empty;
+        for (; ; ) {
+
+            i = skipWhitespace(i);
+            if (i + 1 >= limit) {
+                namespaceCount = marks;
+                return NEED_INPUT;
+            }
+
+            byte b = buffer.get(i);
+            if (b == '>') {
+                i++;
+                empty = false;
+                break;
+            }
+            if (b == '/') {
+                if (buffer.get(i + 1) != '>') {
+                    throw error("Expected '>' after '/' in element [" + localName + "].", i);
+                }
+                i += 2;
+                empty = true;
+                break;
+            }
+
+            i = scanAttribute(i, localName);
+            if (i < 0) {
+                namespaceCount = marks;
+                return NEED_INPUT;
+            }
+        }
+
+        for (int a = 0; a < attributeCount; a++) {
+            attributeNamespaces[a] = attributePrefixes[a].isEmpty() ? null : resolve(attributePrefixes[a], p);
+            for (int other = 0; other < a; other++) {
+                if (attributeNames[other] == attributeNames[a] && Objects.equals(attributeNamespaces[other], attributeNamespaces[a])) {
+                    throw error("Duplicate attribute [" + attributeNames[a] + "] in element [" + localName + "].", p);
+                }
+            }
+        }
+
+        push(prefix, localName, resolve(prefix, p), marks);
+
+        position = i;
+        pendingEnd = empty;
+        return XMLStreamConstants.START_ELEMENT;
+    }
+
+    private int scanAttribute(int i, String elementName) throws XMLStreamException {
+
+        i = scanName(i);
+        if (i < 0) {
+            return NEED_INPUT;
+        }
+        String prefix = scannedPrefix;
+        String localName = scannedLocalName;
+
+        i = skipWhitespace(i);
+        if (i >= limit) {
+            return NEED_INPUT;
+        }
+        if (buffer.get(i) != '=') {
+            throw error("Expected '=' after attribute [" + localName + "] of element [" + elementName + "].", i);
+        }
+
+        i = skipWhitespace(i + 1);
+        if (i >= limit) {
+            return NEED_INPUT;
+        }
+        byte quote = buffer.get(i);
+        if (quote != '"' && quote != '\'') {
+            throw error("Expected quoted value for attribute [" + localName + "] of element [" + elementName + "].", i);
+        }
+
+        int end = i + 1;
+        for (; end < limit; end++) {
+
+            byte b = buffer.get(end);
+            if (b == quote) {
+                break;
+            }
+            if (b == '<') {
+                throw error("Unexpected '<' in attribute [" + localName + "] of element [" + elementName + "].", end);
+            }
+            if (b == '&') {
+                int semicolon = indexOf(';', end + 1);
+                if (semicolon < 0) {
+                    return NEED_INPUT;
+                }
+                checkReference(end + 1, semicolon);
+                end = semicolon;
+            } else if (b < 0) {
+                int length = sequence(end);
+                if (length < 0) {
+                    return NEED_INPUT;
+                }
+                end += length - 1;
+            }
+        }
+        if (end >= limit) {
+            return NEED_INPUT;
+        }
+
+        if (prefix.isEmpty() && localName == XMLConstants.XMLNS_ATTRIBUTE) {
+            declare("", decode(i + 1, end, true));
+        } else if (prefix == XMLConstants.XMLNS_ATTRIBUTE) {
+            declare(localName, decode(i + 1, end, true));
+        } else {
+
+            if (attributeCount == attributeNames.length) {
+                int length = attributeCount * 2;
+                attributeNames = Arrays.copyOf(attributeNames, length);
+                attributePrefixes = Arrays.copyOf(attributePrefixes, length);
+                attributeNamespaces = Arrays.copyOf(attributeNamespaces, length);
+                attributeValues = Arrays.copyOf(attributeValues, length);
+                attributeStarts = Arrays.copyOf(attributeStarts, length);
+                attributeEnds = Arrays.copyOf(attributeEnds, length);
+            }
+
+            attributeNames[attributeCount] = localName;
+            attributePrefixes[attributeCount] = prefix;
+            attributeValues[attributeCount] = null;
+            attributeStarts[attributeCount] = i + 1;
+            attributeEnds[attributeCount] = end;
+            attributeCount++;
+        }
+
+        return end + 1;
+    }
+
+    private int scanEndTag(int p) throws XMLStreamException {
+
+        int i = scanName(p + 2);
+        if (i < 0) {
+            return NEED_INPUT;
+        }
+        i = skipWhitespace(i);
+        if (i >= limit) {
+            return NEED_INPUT;
+        }
+        if (buffer.get(i) != '>') {
+            throw error("Expected '>' to close end tag [" + scannedLocalName + "].", i);
+        }
+        if (depth == 0 || localNames[depth] != scannedLocalName || prefixes[depth] != scannedPrefix) {
+            throw error("Unexpected end tag [" + scannedLocalName + "]" + (depth > 0 ? ", expected [" + localNames[depth] + "]." : "."), p);
+        }
+
+        position = i + 1;
+        pop();
+        return XMLStreamConstants.END_ELEMENT;
+    }
+
+    private int scanMarkup(int p) throws XMLStreamException {
+
+        if (startsWith(p, "<!--")) {
+            int end = indexOf("-->", p + 4);
+            if (end < 0) {
+                return NEED_INPUT;
+            }
+            position = end + 3;
+            return NONE;
+        }
+
+        if (startsWith(p, "<![CDATA[")) {
+            if (depth == 0) {
+                throw error("CDATA is not allowed outside the root element.", p);
+            }
+            int end = indexOf("]]>", p + 9);
+            if (end < 0) {
+                return NEED_INPUT;
+            }
+            checkUtf8(p + 9, end);
+            position = end + 3;
+            textStart = p + 9;
+            textEnd = end;
+            textLength = -1;
+            cdata = true;
+            return XMLStreamConstants.CDATA;
+        }
+
+        if (p + 9 > limit && !isComplete()) {
+            return NEED_INPUT;
+        }
+        if (depth > 0 || rootClosed) {
+            throw error("A document type declaration is only allowed before the root element.", p);
+        }
+
+        // a document type declaration, possibly with an internal subset whose literals, comments and processing
+        // instructions may hold brackets and '>' of their own
+        int end = p + 2;
+        for (int bracket = 0; ; end++) {
+            if (end >= limit || buffer.get(end) == '<' && end + 4 > limit && !isComplete()) {
+                return NEED_INPUT;
+            }
+            byte b = buffer.get(end);
+            if (b == '"' || b == '\'') {
+                end = indexOf(b, end + 1);
+            } else if (startsWith(end, "<!--")) {
+                end = last(indexOf("-->", end + 4), 3);
+            } else if (startsWith(end, "<?")) {
+                end = last(indexOf("?>", end + 2), 2);
+            } else if (b == '[') {
+                bracket++;
+            } else if (b == ']') {
+                bracket--;
+            } else if (b == '>' && bracket == 0) {
+                break;
+            }
+            if (end < 0) {
+                return NEED_INPUT;
+            }
+        }
+        position = end + 1;
+        return NONE;
+    }
+
+    private int scanProcessingInstruction(int p) throws XMLStreamException {
+
+        int end = indexOf("?>", p + 2);
+        if (end < 0) {
+            return NEED_INPUT;
+        }
+
+        if (startsWith(p, "<?xml") && isWhitespace(buffer.get(p + 5))) {
+            checkEncoding(p + 5, end);
+        }
+
+        position = end + 2;
+        return NONE;
+    }
+
+    private void checkEncoding(int start, int end) throws XMLStreamException {
+
+        for (int i = start; i + 8 < end; i++) {
+            if (startsWith(i, "encoding")) {
+
+                int quote = i + 8;
+                while (quote < end && buffer.get(quote) != '"' && buffer.get(quote) != '\'') {
+                    quote++;
+                }
+                int close = quote < end ? indexOf(buffer.get(quote), quote + 1) : -1;
+                if (close < 0 || close > end) {
+                    throw error("Malformed XML declaration.", i);
+                }
+
+                String encoding = string(quote + 1, close);
+                if (!encoding.equalsIgnoreCase("UTF-8") && !encoding.equalsIgnoreCase("UTF8") && !encoding.equalsIgnoreCase("US-ASCII") && !encoding.equalsIgnoreCase("ASCII")) {
+                    throw error("Unsupported encoding [" + encoding + "]; only UTF-8 and ASCII input is supported here, use an XMLStreamReader instead.", quote + 1);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Passes over the content of a skipped element, one tag at a time, without decoding anything.
+     *
+     * @return {@code false} if input ran out before the element's end tag
+     */
+    private boolean skip() {
+
+        while (skipDepth > 0) {
+
+            int p = position;
+            if (p >= limit) {
+                return false;
+            }
+
+            if (buffer.get(p) != '<') {
+                int end = indexOf('<', p);
+                position = end < 0 ? limit : end;
+                continue;
+            }
+            if (p + 1 >= limit) {
+                return false;
+            }
+
+            // index of the token's last byte
+            int end;
+            switch (buffer.get(p + 1)) {
+                case '/':
+                    end = indexOf('>', p + 2);
+                    break;
+                case '?':
+                    end = last(indexOf("?>", p + 2), 2);
+                    break;
+                case '!':
+                    if (p + 9 > limit) {
+                        return false;
+                    }
+                    if (startsWith(p, "<!--")) {
+                        end = last(indexOf("-->", p + 4), 3);
+                    } else if (startsWith(p, "<![CDATA[")) {
+                        end = last(indexOf("]]>", p + 9), 3);
+                    } else {
+                        end = indexOf('>', p + 2);
+                    }
+                    break;
+                default:
+                    end = endOfTag(p + 1);
+            }
+
+            if (end < 0) {
+                return false;
+            }
+
+            if (buffer.get(p + 1) == '/') {
+                skipDepth--;
+            } else if (buffer.get(p + 1) != '?' && buffer.get(p + 1) != '!' && buffer.get(end - 1) != '/') {
+                skipDepth++;
+            }
+            position = end + 1;
+        }
+
+        pop();
+        return true;
+    }
+
+    private static int last(int index, int length) {
+        return index < 0 ? index : index + length - 1;
+    }
+
+    private int endOfTag(int i) {
+        for (byte quote = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void push(String prefix, String localName, String namespaceURI, int marks) {
+
+        if (++depth == localNames.length) {
+            int length = depth * 2;
+            localNames = Arrays.copyOf(localNames, length);
+            prefixes = Arrays.copyOf(prefixes, length);
+            namespaceURIs = Arrays.copyOf(namespaceURIs, length);
+            namespaceMarks = Arrays.copyOf(namespaceMarks, length);
+        }
+
+        localNames[depth] = localName;
+        prefixes[depth] = prefix;
+        namespaceURIs[depth] = namespaceURI;
+        namespaceMarks[depth] = marks;
+        element = depth;
+    }
+
+    private void pop() {
+        element = depth;
+        namespaceCount = namespaceMarks[depth];
+        if (--depth == 0) {
+            rootClosed = true;
+        }
+    }
+
+    private void declare(String prefix, String namespaceURI) {
+        if (namespaceCount == namespacePrefixes.length) {
+            namespacePrefixes = Arrays.copyOf(namespacePrefixes, namespaceCount * 2);
+            namespaceValues = Arrays.copyOf(namespaceValues, namespaceCount * 2);
+        }
+        namespacePrefixes[namespaceCount] = prefix;
+        namespaceValues[namespaceCount] = namespaceURI;
+        namespaceCount++;
+    }
+
+    private String resolve(String prefix, int index) throws XMLStreamException {
+
+        for (int i = namespaceCount - 1; i >= 0; i--) {
+            if (namespacePrefixes[i].equals(prefix)) {
+                return namespaceValues[i].isEmpty() ? null : namespaceValues[i];
+            }
+        }
+
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+            return XMLConstants.XML_NS_URI;
+        }
+        throw error("Undeclared namespace prefix [" + prefix + "].", index);
+    }
+
+    /**
+     * Scans a qualified name into {@link #scannedPrefix} and {@link #scannedLocalName}.
+     *
+     * @return the index after the name, or {@link #NEED_INPUT} if the name may continue past the available input
+     */
+    private int scanName(int start) throws XMLStreamException {
+
+        int colon = -1;
+        int i = start;
+        for (; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == ':' && colon < 0) {
+                colon = i;
+            } else if (isWhitespace(b) || b == '>' || b == '/' || b == '=') {
+                break;
+            }
+        }
+
+        if (i >= limit) {
+            return NEED_INPUT;
+        }
+        if (i == start) {
+            throw error("Expected a name.", start);
+        }
+
+        if (colon < 0) {
+            scannedPrefix = "";
+            scannedLocalName = symbol(start, i);
+        } else {
+            scannedPrefix = symbol(start, colon);
+            scannedLocalName = symbol(colon + 1, i);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the interned string for the name bytes, checking and decoding them only the first time they are seen.
+     */
+    private String symbol(int start, int end) throws XMLStreamException {
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+
+        int mask = symbols.length - 1;
+        for (int slot = (hash ^ hash >>> 16) & mask; ; slot = slot + 1 & mask) {
+
+            byte[] bytes = symbolBytes[slot];
+            if (bytes == null) {
+                break;
+            }
+            if (matches(bytes, start, end)) {
+                return symbols[slot];
+            }
+        }
+
+        checkName(start, end);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        String symbol = new String(bytes, StandardCharsets.UTF_8).intern();
+
+        if (++symbolCount * 2 > symbols.length) {
+            rehash();
+            mask = symbols.length - 1;
+        }
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (symbolBytes[slot] != null) {
+            slot = slot + 1 & mask;
+        }
+        symbolBytes[slot] = bytes;
+        symbols[slot] = symbol;
+
+        return symbol;
+    }
+
+    /**
+     * Checks that the bytes are a name without a prefix, leaving characters beyond ASCII to the UTF-8 check.
+     */
+    private void checkName(int start, int end) throws XMLStreamException {
+
+        if (start == end) {
+            throw error("Expected a name.", start);
+        }
+        for (int i = start; i < end; i++) {
+            int b = buffer.get(i);
+            if (b < 0) {
+                if (sequence(i) < 0) {
+                    throw error("Malformed UTF-8 input.", i);
+                }
+                continue;
+            }
+            boolean letter = b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b == '_';
+            boolean other = b >= '0' && b <= '9' || b == '.' || b == '-';
+            if (!letter && !(other && i > start)) {
+                throw error("Illegal character in name [" + string(start, end) + "].", i);
+            }
+        }
+    }
+
+    private boolean matches(byte[] bytes, int start, int end) {
+        if (bytes.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+
+        String[] oldSymbols = symbols;
+        byte[][] oldBytes = symbolBytes;
+        symbols = new String[oldSymbols.length * 2];
+        symbolBytes = new byte[oldSymbols.length * 2][];
+
+        int mask = symbols.length - 1;
+        for (int i = 0; i < oldBytes.length; i++) {
+            byte[] bytes = oldBytes[i];
+            if (bytes != null) {
+                int hash = 0;
+                for (byte b : bytes) {
+                    hash = 31 * hash + b;
+                }
+                int slot = (hash ^ hash >>> 16) & mask;
+                while (symbolBytes[slot] != null) {
+                    slot = slot + 1 & mask;
+                }
+                symbolBytes[slot] = bytes;
+                symbols[slot] = oldSymbols[i];
+            }
+        }
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < limit && isWhitespace(buffer.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+
+    private int indexOf(byte b, int from) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(char b, int from) {
+        return indexOf((byte) b, from);
+    }
+
+    private int indexOf(String terminator, int from) {
+        byte first = (byte) terminator.charAt(0);
+        for (int i = indexOf(first, from); i >= 0 && i + terminator.length() <= limit; i = indexOf(first, i + 1)) {
+            if (startsWith(i, terminator)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int i, String ascii) {
+        if (i + ascii.length() > limit) {
+            return false;
+        }
+        for (int j = 0; j < ascii.length(); j++) {
+            if (buffer.get(i + j) != ascii.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the length of the UTF-8 sequence starting with the non-ASCII byte at {@code i}, rejecting stray
+     * continuation bytes, overlong forms, surrogates and code points beyond Unicode.
+     *
+     * @return the length, or {@link #NEED_INPUT} if the sequence continues past the available input
+     */
+    private int sequence(int i) throws XMLStreamException {
+
+        int b = buffer.get(i) & 0xFF;
+        int length;
+        int min = 0x80;
+        int max = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            length = 2;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            length = 3;
+            min = b == 0xE0 ? 0xA0 : min;
+            max = b == 0xED ? 0x9F : max;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            length = 4;
+            min = b == 0xF0 ? 0x90 : min;
+            max = b == 0xF4 ? 0x8F : max;
+        } else {
+            throw error("Malformed UTF-8 input.", i);
+        }
+
+        for (int j = 1; j < length; j++) {
+            if (i + j >= limit) {
+                return NEED_INPUT;
+            }
+            int next = buffer.get(i + j) & 0xFF;
+            if (next < min || next > max) {
+                throw error("Malformed UTF-8 input.", i);
+            }
+            min = 0x80;
+            max = 0xBF;
+        }
+        return length;
+    }
+
+    private void checkUtf8(int start, int end) throws XMLStreamException {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                int length = sequence(i);
+                if (length < 0 || i + length > end) {
+                    throw error("Malformed UTF-8 input.", i);
+                }
+                i += length - 1;
+            }
+        }
+    }
+
+    private XMLStreamException error(String message, int index) {
+        return new XMLStreamException(message, new ByteLocation(offset + index));
+    }
+
+    /**
+     * Decodes UTF-8 bytes into {@link #text}, normalizing line ends and, unless in CDATA, expanding references.
+     * Attribute values additionally have their whitespace normalized. The bytes and references have already been
+     * checked while scanning.
+     */
+    private int decode(int start, int end, boolean references, boolean attribute) {
+
+        if (text.length < end - start) {
+            text = new char[Math.max(end - start, text.length * 2)];
+        }
+        char[] chars = text;
+        int length = 0;
+
+        for (int i = start; i < end; ) {
+
+            int b = buffer.get(i);
+
+            if (b >= 0) {
+                if (b == '&' && references) {
+                    int semicolon = indexOf(';', i + 1);
+                    length = reference(i + 1, semicolon, chars, length);
+                    i = semicolon + 1;
+                    continue;
+                }
+                if (b == '\r') {
+                    chars[length++] = attribute ? ' ' : '\n';
+                    i += i + 1 < end && buffer.get(i + 1) == '\n' ? 2 : 1;
+                    continue;
+                }
+                chars[length++] = attribute && (b == '\n' || b == '\t') ? ' ' : (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0) {
+                chars[length++] = (char) ((b & 0x1F) << 6 | buffer.get(i + 1) & 0x3F);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                chars[length++] = (char) ((b & 0x0F) << 12 | (buffer.get(i + 1) & 0x3F) << 6 | buffer.get(i + 2) & 0x3F);
+                i += 3;
+            } else {
+                int codePoint = (b & 0x07) << 18 | (buffer.get(i + 1) & 0x3F) << 12 | (buffer.get(i + 2) & 0x3F) << 6 | buffer.get(i + 3) & 0x3F;
+                chars[length++] = Character.highSurrogate(codePoint);
+                chars[length++] = Character.lowSurrogate(codePoint);
+                i += 4;
+            }
+        }
+
+        return length;
+    }
+
+    private String decode(int start, int end, boolean attribute) {
+        String value = new String(text, 0, decode(start, end, true, attribute));
+        textLength = -1;
+        return value;
+    }
+
+    /**
+     * Decodes bytes that have not been checked, for messages and the XML declaration.
+     */
+    private String string(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int reference(int start, int end, char[] chars, int length) {
+        if (buffer.get(start) == '#') {
+            return length + Character.toChars(codePoint(start + 1, end), chars, length);
+        }
+        chars[length] = entity(start);
+        return length + 1;
+    }
+
+    /**
+     * Checks the reference between {@code &} and the {@code ;} at {@code end}, as {@link #reference} would expand it.
+     */
+    private void checkReference(int start, int end) throws XMLStreamException {
+        if (buffer.get(start) == '#') {
+            if (codePoint(start + 1, end) < 0) {
+                throw error("Illegal character reference [&" + string(start, end) + ";].", start - 1);
+            }
+        } else if (entity(start) == 0) {
+            throw error("Undeclared entity [" + string(start, end) + "].", start - 1);
+        }
+    }
+
+    /**
+     * Parses the digits of a character reference.
+     *
+     * @return the code point, or {@code -1} if the reference is malformed or refers to a character XML does not allow
+     */
+    private int codePoint(int start, int end) {
+
+        boolean hex = start < end && buffer.get(start) == 'x';
+        int i = hex ? start + 1 : start;
+        if (i == end) {
+            return -1;
+        }
+
+        int codePoint = 0;
+        for (; i < end; i++) {
+            int digit = Character.digit(buffer.get(i), hex ? 16 : 10);
+            if (digit < 0) {
+                return -1;
+            }
+            codePoint = codePoint * (hex ? 16 : 10) + digit;
+            if (codePoint > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+        }
+
+        boolean allowed = codePoint >= 0x20
+                ? codePoint < 0xD800 || codePoint >= 0xE000 && codePoint <= 0xFFFD || codePoint >= 0x10000
+                : codePoint == '\t' || codePoint == '\n' || codePoint == '\r';
+        return allowed ? codePoint : -1;
+    }
+
+    /**
+     * @return the predefined entity starting at {@code start}, or {@code 0} if there is none
+     */
+    private char entity(int start) {
+        if (startsWith(start, "lt;")) {
+            return '<';
+        } else if (startsWith(start, "gt;")) {
+            return '>';
+        } else if (startsWith(start, "amp;")) {
+            return '&';
+        } else if (startsWith(start, "quot;")) {
+            return '"';
+        } else if (startsWith(start, "apos;")) {
+            return '\'';
+        }
+        return 0;
+    }
+
+    @Override
+    public String getLocalName() {
+        return localNames[element];
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return namespaceURIs[element];
+    }
+
+    @Override
+    public String getPrefix() {
+        return prefixes[element];
+    }
+
+    @Override
+    public String getAttributeValue(QName name) {
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributeNames[i].equals(name.getLocalPart()) && name.getNamespaceURI().equals(nonNull(attributeNamespaces[i]))) {
+                return getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributeNames[index];
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributeNamespaces[index];
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return attributePrefixes[index];
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        if (attributeValues[index] == null) {
+            attributeValues[index] = decode(attributeStarts[index], attributeEnds[index], true);
+        }
+        return attributeValues[index];
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        decodeText();
+        return text;
+    }
+
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    @Override
+    public int getTextLength() {
+        decodeText();
+        return textLength;
+    }
+
+    private void decodeText() {
+        if (textLength < 0) {
+            textLength = decode(textStart, textEnd, !cdata, false);
+        }
+    }
+
+    @Override
+    public StartElement asStartElement() {
+
+        XMLEventFactory factory = eventFactory();
+
+        List<Attribute> attributes = new ArrayList<>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.add(factory.createAttribute(attributePrefixes[i], nonNull(attributeNamespaces[i]), attributeNames[i], getAttributeValue(i)));
+        }
+
+        return factory.createStartElement(getPrefix(), nonNull(getNamespaceURI()), getLocalName(), attributes.iterator(), namespaces().iterator());
+    }
+
+    @Override
+    public EndElement asEndElement() {
+        return eventFactory().createEndElement(getPrefix(), nonNull(getNamespaceURI()), getLocalName(), namespaces().iterator());
+    }
+
+    private List<Namespace> namespaces() {
+
+        XMLEventFactory factory = eventFactory();
+
+        // declarations of an element that has ended are already out of scope
+        List<Namespace> namespaces = new ArrayList<>();
+        for (int i = namespaceMarks[element]; i < namespaceCount; i++) {
+            if (namespacePrefixes[i].isEmpty()) {
+                namespaces.add(factory.createNamespace(namespaceValues[i]));
+            } else {
+                namespaces.add(factory.createNamespace(namespacePrefixes[i], namespaceValues[i]));
+            }
+        }
+        return namespaces;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private XMLEventFactory eventFactory() {
+        if (eventFactory == null) {
+            eventFactory = XMLEventFactory.newFactory();
+        }
+        return eventFactory;
+    }
+
+    private static final class ByteLocation implements Location {
+
+        private final long offset;
+
+        ByteLocation(long offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return (int) Math.min(offset, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+    }
+}
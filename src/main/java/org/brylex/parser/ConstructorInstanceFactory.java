@@ -0,0 +1,39 @@
+package org.brylex.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+
+/**
+ * Default {@link InstanceFactory}: calls the no-argument constructor through a handle resolved once per type.
+ */
+final class ConstructorInstanceFactory implements InstanceFactory {
+
+    static final ConstructorInstanceFactory INSTANCE = new ConstructorInstanceFactory();
+
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return MethodHandles.lookup().unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Type [" + type.getName() + "] has no usable no-argument constructor.", e);
+            }
+        }
+    };
+
+    private ConstructorInstanceFactory() {
+    }
+
+    @Override
+    public <T> T newInstance(Class<T> type) {
+        try {
+            return type.cast((Object) CONSTRUCTORS.get(type).invokeExact());
+        } catch (Throwable e) {
+            throw new RuntimeException("Unable to create instance of [" + type.getName() + "].", e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.brylex.parser;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Lock-free pool of {@link ParseContext}s for one plan, so that concurrent parses reuse their stacks and text buffers
+ * instead of growing new ones per document. Not tied to threads, and therefore fine for virtual threads.
+ */
+final class ContextPool {
+
+    private final State root;
+    private final InstanceFactory instanceFactory;
+    private final ParseListener listener;
+    private final Queue<ParseContext> contexts = new ConcurrentLinkedQueue<>();
+
+    ContextPool(State root, InstanceFactory instanceFactory, ParseListener listener) {
+        this.root = root;
+        this.instanceFactory = instanceFactory;
+        this.listener = listener;
+    }
+
+    ParseContext acquire(Object handler) {
+        ParseContext context = contexts.poll();
+        if (context == null) {
+            context = new ParseContext(root, instanceFactory, listener);
+        }
+        context.start(handler);
+        return context;
+    }
+
+    void release(ParseContext context) {
+        context.clear();
+        contexts.offer(context);
+    }
+}
@@ -0,0 +1,14 @@
+package org.brylex.parser;
+
+/**
+ * Turns element text into a value for a {@link org.brylex.parser.annotation.Path} field or setter. The characters
+ * belong to the parser and are only valid for the duration of the call.
+ * <p>
+ * Implementations are instantiated once per binding through their no-argument constructor and may be called from
+ * several threads at once.
+ */
+public interface Converter<T> {
+
+    T convert(char[] buffer, int start, int length);
+
+}
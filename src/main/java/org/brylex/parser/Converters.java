@@ -0,0 +1,274 @@
+package org.brylex.parser;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+
+/**
+ * Built-in {@link Converter}s and the allocation-free number parsing behind the primitive bindings. All methods expect
+ * text that has already been stripped of surrounding whitespace.
+ */
+final class Converters {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private Converters() {
+    }
+
+    /**
+     * Returns the built-in converter for an object type, or {@code null} if there is none.
+     */
+    static Converter<?> forType(Class<?> type) {
+
+        if (type == BigDecimal.class) {
+            return (buffer, start, length) -> new BigDecimal(buffer, start, length);
+        }
+        if (type == BigInteger.class) {
+            return (buffer, start, length) -> new BigInteger(new String(buffer, start, length));
+        }
+        if (type == Integer.class) {
+            return (buffer, start, length) -> parseInt(buffer, start, length);
+        }
+        if (type == Long.class) {
+            return (buffer, start, length) -> parseLong(buffer, start, length);
+        }
+        if (type == Short.class) {
+            return (buffer, start, length) -> parseShort(buffer, start, length);
+        }
+        if (type == Byte.class) {
+            return (buffer, start, length) -> parseByte(buffer, start, length);
+        }
+        if (type == Double.class) {
+            return (buffer, start, length) -> parseDouble(buffer, start, length);
+        }
+        if (type == Float.class) {
+            return (buffer, start, length) -> (float) parseDouble(buffer, start, length);
+        }
+        if (type == Boolean.class) {
+            return (buffer, start, length) -> parseBoolean(buffer, start, length);
+        }
+        if (type == Character.class) {
+            return (buffer, start, length) -> parseChar(buffer, start, length);
+        }
+        if (type == Instant.class) {
+            return (buffer, start, length) -> Instant.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type == LocalDate.class) {
+            return (buffer, start, length) -> LocalDate.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type == LocalDateTime.class) {
+            return (buffer, start, length) -> LocalDateTime.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type == LocalTime.class) {
+            return (buffer, start, length) -> LocalTime.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type == OffsetDateTime.class) {
+            return (buffer, start, length) -> OffsetDateTime.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type == ZonedDateTime.class) {
+            return (buffer, start, length) -> ZonedDateTime.parse(CharBuffer.wrap(buffer, start, length));
+        }
+        if (type.isEnum()) {
+            return new EnumConverter(type);
+        }
+
+        return null;
+    }
+
+    static int parseInt(char[] buffer, int start, int length) {
+        long value = parseLong(buffer, start, length);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormat(buffer, start, length);
+        }
+        return (int) value;
+    }
+
+    static short parseShort(char[] buffer, int start, int length) {
+        long value = parseLong(buffer, start, length);
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw numberFormat(buffer, start, length);
+        }
+        return (short) value;
+    }
+
+    static byte parseByte(char[] buffer, int start, int length) {
+        long value = parseLong(buffer, start, length);
+        if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+            throw numberFormat(buffer, start, length);
+        }
+        return (byte) value;
+    }
+
+    static long parseLong(char[] buffer, int start, int length) {
+
+        int i = start;
+        int end = start + length;
+
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        if (i == end) {
+            throw numberFormat(buffer, start, length);
+        }
+
+        // accumulate negatively, so that Long.MIN_VALUE does not overflow
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long value = 0;
+
+        for (; i < end; i++) {
+
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9 || value < multiplyLimit) {
+                throw numberFormat(buffer, start, length);
+            }
+
+            value *= 10;
+            if (value < limit + digit) {
+                throw numberFormat(buffer, start, length);
+            }
+            value -= digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Plain decimals with at most 15 significant digits are converted exactly from a long mantissa and a power of ten;
+     * everything else (exponents, special values, long mantissas) falls back to {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(char[] buffer, int start, int length) {
+
+        int i = start;
+        int end = start + length;
+
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean any = false;
+
+        for (; i < end; i++) {
+
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+
+                if (digits == 15) {
+                    return Double.parseDouble(new String(buffer, start, length));
+                }
+
+                mantissa = mantissa * 10 + (c - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+                if (fraction) {
+                    scale++;
+                }
+                any = true;
+
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Double.parseDouble(new String(buffer, start, length));
+            }
+        }
+
+        if (!any) {
+            throw numberFormat(buffer, start, length);
+        }
+
+        if (scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(new String(buffer, start, length));
+        }
+
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Accepts the XML Schema lexical forms {@code true}, {@code false}, {@code 1} and {@code 0}.
+     */
+    static boolean parseBoolean(char[] buffer, int start, int length) {
+
+        if (regionMatches(buffer, start, length, "true") || regionMatches(buffer, start, length, "1")) {
+            return true;
+        }
+        if (regionMatches(buffer, start, length, "false") || regionMatches(buffer, start, length, "0")) {
+            return false;
+        }
+
+        throw new IllegalArgumentException("Not a boolean value [" + new String(buffer, start, length) + "].");
+    }
+
+    static char parseChar(char[] buffer, int start, int length) {
+        if (length != 1) {
+            throw new IllegalArgumentException("Not a single character [" + new String(buffer, start, length) + "].");
+        }
+        return buffer[start];
+    }
+
+    static boolean regionMatches(char[] buffer, int start, int length, String value) {
+
+        if (length != value.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static NumberFormatException numberFormat(char[] buffer, int start, int length) {
+        return new NumberFormatException("Not a number [" + new String(buffer, start, length) + "].");
+    }
+
+    private static final class EnumConverter implements Converter<Object> {
+
+        private final Class<?> type;
+        private final Object[] constants;
+        private final String[] names;
+
+        EnumConverter(Class<?> type) {
+            this.type = type;
+            this.constants = type.getEnumConstants();
+            this.names = new String[constants.length];
+            for (int i = 0; i < constants.length; i++) {
+                names[i] = ((Enum<?>) constants[i]).name();
+            }
+        }
+
+        @Override
+        public Object convert(char[] buffer, int start, int length) {
+
+            for (int i = 0; i < names.length; i++) {
+                if (regionMatches(buffer, start, length, names[i])) {
+                    return constants[i];
+                }
+            }
+
+            throw new IllegalArgumentException("No constant [" + new String(buffer, start, length) + "] in [" + type.getName() + "].");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.brylex.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+
+/**
+ * The view of the input the parse engine works on. Names, attributes and text are read straight from the current
+ * position; {@link StartElement} and {@link EndElement} objects are only created when a handler asks for them.
+ */
+interface Cursor {
+
+    boolean hasNext() throws XMLStreamException;
+
+    /**
+     * Advances to the next token and returns its {@link javax.xml.stream.XMLStreamConstants} event type.
+     */
+    int next() throws XMLStreamException;
+
+    int getEventType();
+
+    /**
+     * Skips the current start element and all of its content, leaving the cursor on the matching end element. Text
+     * and names inside the skipped subtree are never materialized.
+     */
+    void skipElement() throws XMLStreamException;
+
+    String getLocalName();
+
+    String getNamespaceURI();
+
+    String getPrefix();
+
+    /**
+     * Returns the value of the named attribute of the current start element, or {@code null} if it is absent. A name
+     * without a namespace only matches attributes without one.
+     */
+    String getAttributeValue(QName name);
+
+    int getAttributeCount();
+
+    String getAttributeLocalName(int index);
+
+    String getAttributeNamespace(int index);
+
+    String getAttributePrefix(int index);
+
+    String getAttributeValue(int index);
+
+    char[] getTextCharacters();
+
+    int getTextStart();
+
+    int getTextLength();
+
+    StartElement asStartElement();
+
+    EndElement asEndElement();
+
+    /**
+     * Gives the cursor the listener of the parse, to report the input bytes it reads. Only cursors reading bytes
+     * themselves use it.
+     */
+    default void setListener(ParseListener listener) {
+    }
+
+    /**
+     * Releases the input after parsing stopped before its end. Cursors over input the caller owns do nothing.
+     */
+    default void close() throws XMLStreamException {
+    }
+}
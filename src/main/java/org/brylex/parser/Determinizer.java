@@ -0,0 +1,443 @@
+package org.brylex.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Turns trees of states compiled from paths into deterministic states, by subset construction. Each resulting state
+ * stands for the set of path states an element matches at once, plus the descendant steps still watching below some
+ * ancestor; its bindings are those of all of them. An element's state is thus resolved with one transition lookup
+ * however deep the document is, and nothing is ever matched twice.
+ * <p>
+ * Where steps with predicates of one handler compete, an element takes the best ranked one that matches, together
+ * with the plain steps of that handler's other paths matching it; the paths of different handlers select their steps
+ * independently. Where several handlers select on one name, the state for a combination of their choices is only built
+ * the first time an element makes it, as their product can be far larger than the combinations documents contain.
+ * Descendant steps do not reach into elements bound to a sub-handler, whose own plan resolves their children.
+ */
+final class Determinizer {
+
+    /** Guards against paths whose combinations would need an unreasonable number of states. */
+    static final int MAX_STATES = 10000;
+
+    private final Map<Set<Object>, State> states = new HashMap<>();
+    private final Deque<Object[]> pending = new ArrayDeque<>();
+    private final Map<State, Integer> slots = new IdentityHashMap<>();
+
+    // the number of states at which building the current ones gives up
+    private int limit = MAX_STATES;
+
+    private Determinizer() {
+    }
+
+    static State determinize(State root) {
+        return determinize(Collections.singletonList(root));
+    }
+
+    /**
+     * Determinizes the trees of several handlers' paths at once; the root of each is given in slot order.
+     */
+    static State determinize(List<State> roots) {
+
+        Determinizer determinizer = new Determinizer();
+        for (int slot = 0; slot < roots.size(); slot++) {
+            determinizer.assign(roots.get(slot), slot);
+        }
+
+        State start = determinizer.state(roots, Collections.emptySet(), null);
+        determinizer.expandPending();
+
+        return start;
+    }
+
+    private void expandPending() {
+        while (!pending.isEmpty()) {
+            Object[] next = pending.poll();
+            expand((State) next[0], (Set<?>) next[1]);
+        }
+    }
+
+    private void assign(State state, int slot) {
+
+        slots.put(state, slot);
+
+        for (String name : state.getNames()) {
+            assign(state.transition(name), slot);
+        }
+        for (String name : state.getDescendantNames()) {
+            assign(state.descendant(name), slot);
+        }
+    }
+
+    private void assign(State.Transition transition, int slot) {
+        if (transition.getPlain() != null) {
+            assign(transition.getPlain(), slot);
+        }
+        for (State state : transition.getCandidates()) {
+            assign(state, slot);
+        }
+    }
+
+    /**
+     * Returns the state for the path states matched by an element and the descendant steps active above it. The
+     * step is the one the element must meet to enter the state, if it has predicates.
+     */
+    private State state(List<State> matched, Set<Loop> loops, Step step) {
+
+        Set<Object> key = new LinkedHashSet<>(matched);
+        for (State state : matched) {
+            if (!state.getDescendantNames().isEmpty()) {
+                key.add(new Loop(state));
+            }
+        }
+        key.addAll(loops);
+
+        State state = states.get(key);
+        if (state != null) {
+            return state;
+        }
+
+        if (states.size() == limit) {
+            throw new IllegalArgumentException("Paths need more than " + MAX_STATES + " states to match deterministically.");
+        }
+
+        if (step == null && !matched.isEmpty()) {
+            step = matched.get(0).getStep();
+        }
+        state = new State(step != null ? step.getLocalName() : matched.isEmpty() ? Step.DESCENDANT : "/", step, states.size());
+
+        for (State member : matched) {
+
+            Invoker[] start = member.getStartInvokers();
+            for (int i = 0; i < start.length; i++) {
+                state.addStartInvoker(start[i], get(member.getStartSlots(), i), get(member.getStartOnce(), i));
+            }
+            if (member.getSubHandler() != null) {
+                state.addStartInvoker(member.getSubHandler(), member.getSubHandlerSlot(), member.getSubHandlerOnce());
+            }
+
+            Invoker[] end = member.getEndInvokers();
+            for (int i = 0; i < end.length; i++) {
+                state.addEndInvoker(end[i], get(member.getEndSlots(), i), get(member.getEndOnce(), i));
+            }
+        }
+
+        states.put(key, state);
+        pending.add(new Object[]{state, key});
+
+        return state;
+    }
+
+    private static int get(int[] values, int i) {
+        return values != null ? values[i] : -1;
+    }
+
+    private void expand(State state, Set<?> key) {
+
+        List<State> members = new ArrayList<>();
+        Set<Loop> loops = new LinkedHashSet<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (Object item : key) {
+            if (item instanceof Loop) {
+                Loop loop = (Loop) item;
+                loops.add(loop);
+                names.addAll(loop.owner.getDescendantNames());
+            } else {
+                State member = (State) item;
+                members.add(member);
+                names.addAll(Arrays.asList(member.getNames()));
+            }
+        }
+        names.remove(Step.WILDCARD);
+
+        if (state.getSubHandler() != null) {
+            checkSubHandler(state, members);
+            return;
+        }
+
+        for (String name : names) {
+            state.addTransition(name, transition(members, loops, name));
+        }
+
+        if (!loops.isEmpty() || wildcards(members, loops)) {
+            state.setOther(transition(members, loops, null));
+        }
+    }
+
+    /**
+     * Rejects paths of one handler continuing below an element another handler binds to a sub-handler: that
+     * sub-handler's plan matches the element's content, so they would silently never fire.
+     */
+    private void checkSubHandler(State state, List<State> members) {
+
+        int owner = -1;
+        for (State member : members) {
+            if (member.getSubHandler() != null) {
+                owner = slots.get(member);
+            }
+        }
+
+        for (State member : members) {
+            if (slots.get(member) != owner && (member.getNames().length > 0 || !member.getDescendantNames().isEmpty())) {
+                throw new IllegalArgumentException("Paths continue below " + state + ", which is bound to sub-handler [" + state.getSubHandler().getType().getName() + "] of another handler.");
+            }
+        }
+    }
+
+    private static boolean wildcards(List<State> members, Set<Loop> loops) {
+        for (State member : members) {
+            if (member.transition(Step.WILDCARD) != null) {
+                return true;
+            }
+        }
+        for (Loop loop : loops) {
+            if (loop.owner.descendant(Step.WILDCARD) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the transitions every member and active descendant step takes on the name, or on names none of them
+     * know if {@code null}. Descendant steps stay active in every state reached.
+     */
+    private State.Transition transition(List<State> members, Set<Loop> loops, String name) {
+
+        Map<Integer, List<State.Transition>> groups = new TreeMap<>();
+        for (State member : members) {
+            add(groups, member, name != null ? member.transition(name) : null);
+            add(groups, member, member.transition(Step.WILDCARD));
+        }
+        for (Loop loop : loops) {
+            add(groups, loop.owner, name != null ? loop.owner.descendant(name) : null);
+            add(groups, loop.owner, loop.owner.descendant(Step.WILDCARD));
+        }
+
+        List<State> plains = new ArrayList<>();
+        List<List<State.Transition>> selecting = new ArrayList<>();
+        for (List<State.Transition> group : groups.values()) {
+            plains.addAll(plains(group));
+            if (candidates(group) > 0) {
+                selecting.add(group);
+            }
+        }
+
+        State.Transition merged = new State.Transition();
+        if (!plains.isEmpty() || !loops.isEmpty()) {
+            merged.setPlain(state(plains, loops, null));
+        }
+
+        if (selecting.size() == 1) {
+            for (State.Transition part : selecting.get(0)) {
+                for (State candidate : part.getCandidates()) {
+                    merged.add(state(choice(candidate, plains, selecting.get(0)), loops, candidate.getStep()));
+                }
+            }
+        } else if (selecting.size() > 1) {
+            combine(merged, selecting, plains, loops, name);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Builds the parts of a transition on which several handlers select independently. The state for a combination of
+     * their choices is left to {@link #combination}, called by the transition when an element first makes it.
+     */
+    private void combine(State.Transition merged, List<List<State.Transition>> selecting, List<State> plains, Set<Loop> loops, String name) {
+
+        String label = name != null ? name : Step.WILDCARD;
+
+        State.Transition[] parts = new State.Transition[selecting.size()];
+        List<List<List<State>>> choices = new ArrayList<>();
+        long combinations = 1;
+
+        for (int i = 0; i < parts.length; i++) {
+
+            List<State.Transition> group = selecting.get(i);
+            List<State> groupPlains = plains(group);
+
+            State.Transition part = new State.Transition();
+            List<List<State>> outcomes = new ArrayList<>();
+            outcomes.add(Collections.emptyList());
+
+            if (!groupPlains.isEmpty()) {
+                part.setPlain(new State(label, null, 0));
+            }
+            outcomes.add(groupPlains);
+
+            for (State.Transition transition : group) {
+                for (State candidate : transition.getCandidates()) {
+                    part.add(new State(label, candidate.getStep(), outcomes.size() - 1));
+                    outcomes.add(choice(candidate, Collections.emptyList(), group));
+                }
+            }
+
+            parts[i] = part;
+            choices.add(outcomes);
+            try {
+                combinations = Math.multiplyExact(combinations, part.getChoices());
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many handlers select on [" + label + "] to number the combinations of their choices.", e);
+            }
+        }
+
+        List<State> fixed = new ArrayList<>(plains);
+        for (List<State.Transition> group : selecting) {
+            fixed.removeAll(plains(group));
+        }
+
+        List<List<List<State>>> sources = new ArrayList<>(choices);
+        for (State state : fixed) {
+            sources.add(Collections.singletonList(Collections.singletonList(state)));
+        }
+        checkCombinations(label, sources);
+
+        merged.combine(parts, index -> combination(parts, choices, fixed, loops, index));
+    }
+
+    /**
+     * Builds the state for the combination of choices numbered {@code index}, as {@link State.Transition#combine}
+     * numbers them, with the states below it. Called while parsing, possibly by several threads at once.
+     */
+    private synchronized State combination(State.Transition[] parts, List<List<List<State>>> choices, List<State> fixed, Set<Loop> loops, long index) {
+
+        List<State> matched = new ArrayList<>();
+        long rest = index;
+        for (int i = parts.length - 1; i >= 0; i--) {
+            matched.addAll(0, choices.get(i).get((int) (rest % parts[i].getChoices())));
+            rest /= parts[i].getChoices();
+        }
+        matched.addAll(fixed);
+
+        if (matched.isEmpty() && loops.isEmpty()) {
+            return null;
+        }
+
+        limit = states.size() + MAX_STATES;
+        State state = state(matched, loops, null);
+        expandPending();
+        return state;
+    }
+
+    /**
+     * Rejects the plan if any two handlers make choices that cannot be merged into one state, as {@link State} and
+     * {@link #checkSubHandler} would once an element made them. Conflicts are between two handlers at a time, so
+     * checking every pair of choices covers every combination without building one.
+     *
+     * @param sources per handler, the lists of states each of its choices matches
+     */
+    private void checkCombinations(String label, List<List<List<State>>> sources) {
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < sources.size(); j++) {
+                if (i != j) {
+                    for (List<State> owner : sources.get(i)) {
+                        for (List<State> other : sources.get(j)) {
+                            checkCombination(label, owner, other);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkCombination(String label, List<State> owner, List<State> others) {
+
+        SubHandlerInvoker subHandler = null;
+        for (State state : owner) {
+            if (state.getSubHandler() != null) {
+                subHandler = state.getSubHandler();
+            }
+        }
+        if (subHandler == null) {
+            return;
+        }
+
+        for (State other : others) {
+            if (other.getSubHandler() != null && !other.getSubHandler().equals(subHandler)) {
+                throw new IllegalArgumentException("Only one sub-handler can be bound to State(" + label + "), found [" + subHandler.getType().getName() + "] and [" + other.getSubHandler().getType().getName() + "].");
+            }
+            if (other.getNames().length > 0 || !other.getDescendantNames().isEmpty()) {
+                throw new IllegalArgumentException("Paths continue below State(" + label + "), which is bound to sub-handler [" + subHandler.getType().getName() + "] of another handler.");
+            }
+        }
+    }
+
+    /**
+     * The states matched when the candidate is selected: the candidate itself, the plain states of the other parts of
+     * its handler's group, and the given plain states of other handlers.
+     */
+    private static List<State> choice(State candidate, List<State> plains, List<State.Transition> group) {
+
+        List<State> matched = new ArrayList<>();
+        matched.add(candidate);
+        for (State.Transition other : group) {
+            if (other.getPlain() != null && !other.getCandidates().contains(candidate)) {
+                matched.add(other.getPlain());
+            }
+        }
+        for (State plain : plains) {
+            if (!matched.contains(plain) && !plains(group).contains(plain)) {
+                matched.add(plain);
+            }
+        }
+        return matched;
+    }
+
+    private static List<State> plains(List<State.Transition> group) {
+        List<State> plains = new ArrayList<>();
+        for (State.Transition transition : group) {
+            if (transition.getPlain() != null) {
+                plains.add(transition.getPlain());
+            }
+        }
+        return plains;
+    }
+
+    private static int candidates(List<State.Transition> group) {
+        int count = 0;
+        for (State.Transition transition : group) {
+            count += transition.getCandidates().size();
+        }
+        return count;
+    }
+
+    private void add(Map<Integer, List<State.Transition>> groups, State owner, State.Transition transition) {
+        if (transition != null) {
+            groups.computeIfAbsent(slots.get(owner), slot -> new ArrayList<>()).add(transition);
+        }
+    }
+
+    /**
+     * The descendant steps of a path state, active at every depth below the element that matched it.
+     */
+    private static final class Loop {
+
+        private final State owner;
+
+        private Loop(State owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Loop && ((Loop) o).owner == owner;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(owner);
+        }
+    }
+}
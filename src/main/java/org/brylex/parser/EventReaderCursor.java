@@ -0,0 +1,173 @@
+package org.brylex.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link Cursor} over an {@link XMLEventReader}, for callers that already hold one. The events exist anyway, so they
+ * are handed out as they are.
+ */
+class EventReaderCursor implements Cursor {
+
+    private final XMLEventReader reader;
+
+    private XMLEvent event;
+    private final List<Attribute> attributes = new ArrayList<>();
+    private boolean attributesRead;
+    private char[] text = new char[64];
+    private int textLength;
+
+    EventReaderCursor(XMLEventReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return reader.hasNext();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+
+        event = reader.nextEvent();
+        textLength = -1;
+        attributesRead = false;
+
+        return event.getEventType();
+    }
+
+    @Override
+    public void skipElement() throws XMLStreamException {
+
+        attributesRead = false;
+
+        int depth = 1;
+        while (depth > 0) {
+            event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    @Override
+    public int getEventType() {
+        return event != null ? event.getEventType() : XMLStreamConstants.START_DOCUMENT;
+    }
+
+    @Override
+    public String getLocalName() {
+        return name().getLocalPart();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        String namespaceURI = name().getNamespaceURI();
+        return namespaceURI.isEmpty() ? null : namespaceURI;
+    }
+
+    @Override
+    public String getPrefix() {
+        return name().getPrefix();
+    }
+
+    @Override
+    public String getAttributeValue(QName name) {
+        Attribute attribute = event.asStartElement().getAttributeByName(name);
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return attributes().size();
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributes().get(index).getName().getLocalPart();
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        String namespaceURI = attributes().get(index).getName().getNamespaceURI();
+        return namespaceURI.isEmpty() ? null : namespaceURI;
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return attributes().get(index).getName().getPrefix();
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return attributes().get(index).getValue();
+    }
+
+    private QName name() {
+        return event.isStartElement() ? event.asStartElement().getName() : event.asEndElement().getName();
+    }
+
+    private List<Attribute> attributes() {
+        if (!attributesRead) {
+            attributes.clear();
+            Iterator<?> iterator = event.asStartElement().getAttributes();
+            while (iterator.hasNext()) {
+                attributes.add((Attribute) iterator.next());
+            }
+            attributesRead = true;
+        }
+        return attributes;
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+
+        if (textLength < 0) {
+            String data = event.asCharacters().getData();
+            textLength = data.length();
+            if (textLength > text.length) {
+                text = new char[Math.max(textLength, text.length * 2)];
+            }
+            data.getChars(0, textLength, text, 0);
+        }
+
+        return text;
+    }
+
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    @Override
+    public int getTextLength() {
+        getTextCharacters();
+        return textLength;
+    }
+
+    @Override
+    public StartElement asStartElement() {
+        return event.asStartElement();
+    }
+
+    @Override
+    public EndElement asEndElement() {
+        return event.asEndElement();
+    }
+}
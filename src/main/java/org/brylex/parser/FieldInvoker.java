@@ -1,38 +1,35 @@
 package org.brylex.parser;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 
 /**
  * Created by runepeter on 09.12.13.
  */
-public class FieldInvoker implements Invoker {
+public class FieldInvoker extends TextInvoker {
 
     private final Field field;
-    private final Object handler;
-    private final Class<?> fieldType;
 
-    public FieldInvoker(Field field, Object handler) {
-        this.field = field;
-        this.handler = handler;
-        this.fieldType = field.getType();
+    public FieldInvoker(Field field) {
+        this(field, null);
     }
 
-    @Override
-    public void invoke(Object argument) {
-
-        if (argument == null) {
-            throw new IllegalArgumentException("Cannot set field value to  [null].");
-        }
+    public FieldInvoker(Field field, Converter<?> converter) {
+        this(field, converter, false);
+    }
 
-        if (!fieldType.isAssignableFrom(argument.getClass())) {
-            return;
-        }
+    public FieldInvoker(Field field, Converter<?> converter, boolean intern) {
+        super(field, field.getType(), setter(field), converter, intern);
+        this.field = field;
+    }
 
+    private static MethodHandle setter(Field field) {
         try {
             field.setAccessible(true);
-            field.set(handler, argument);
+            return MethodHandles.lookup().unreflectSetter(field);
         } catch (IllegalAccessException e) {
-            throw new RuntimeException("Unable to apply value [" + argument + "] to handler [" + handler + "].", e);
+            throw new IllegalArgumentException("Unable to bind field [" + field + "].", e);
         }
     }
 
@@ -43,16 +40,11 @@ public class FieldInvoker implements Invoker {
 
         FieldInvoker that = (FieldInvoker) o;
 
-        if (!field.equals(that.field)) return false;
-        if (!handler.equals(that.handler)) return false;
-
-        return true;
+        return field.equals(that.field);
     }
 
     @Override
     public int hashCode() {
-        int result = field.hashCode();
-        result = 31 * result + handler.hashCode();
-        return result;
+        return field.hashCode();
     }
 }
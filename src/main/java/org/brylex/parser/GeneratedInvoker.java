@@ -0,0 +1,36 @@
+package org.brylex.parser;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Calls a handler method through a function generated at build time, passing the event or sub-handler as is.
+ */
+final class GeneratedInvoker implements Invoker {
+
+    private final String name;
+    private final BiConsumer<Object, Object> target;
+
+    GeneratedInvoker(String name, BiConsumer<Object, Object> target) {
+        this.name = name;
+        this.target = target;
+    }
+
+    @Override
+    public void invoke(Object handler, Object argument) {
+
+        if (argument == null) {
+            throw new IllegalArgumentException("Cannot invoke with [null] argument.");
+        }
+
+        try {
+            target.accept(handler, argument);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Unable to invoke method [" + name + "] on handler [" + handler + "] using argument value [" + argument + "].", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,61 @@
+package org.brylex.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Passes the converted text of an element to a function generated at build time, which sets the field or calls the
+ * method it was generated for. Functions taking a primitive are called through their own {@code accept}, unboxed.
+ */
+final class GeneratedTextInvoker extends TextInvoker {
+
+    private static final MethodHandle ACCEPT;
+    private static final MethodHandle ACCEPT_RANGE;
+    private static final Map<Class<?>, MethodHandle> ACCEPT_PRIMITIVE = new HashMap<>();
+
+    static {
+        try {
+            ACCEPT = accept(BiConsumer.class, Object.class);
+            ACCEPT_RANGE = MethodHandles.publicLookup().findVirtual(Binder.Range.class, "accept", MethodType.methodType(void.class, Object.class, char[].class, int.class, int.class));
+            ACCEPT_PRIMITIVE.put(int.class, accept(ObjIntConsumer.class, int.class));
+            ACCEPT_PRIMITIVE.put(long.class, accept(ObjLongConsumer.class, long.class));
+            ACCEPT_PRIMITIVE.put(double.class, accept(ObjDoubleConsumer.class, double.class));
+            ACCEPT_PRIMITIVE.put(float.class, accept(Binder.ObjFloatConsumer.class, float.class));
+            ACCEPT_PRIMITIVE.put(short.class, accept(Binder.ObjShortConsumer.class, short.class));
+            ACCEPT_PRIMITIVE.put(byte.class, accept(Binder.ObjByteConsumer.class, byte.class));
+            ACCEPT_PRIMITIVE.put(boolean.class, accept(Binder.ObjBooleanConsumer.class, boolean.class));
+            ACCEPT_PRIMITIVE.put(char.class, accept(Binder.ObjCharConsumer.class, char.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle accept(Class<?> type, Class<?> valueType) throws ReflectiveOperationException {
+        return MethodHandles.publicLookup().findVirtual(type, "accept", MethodType.methodType(void.class, Object.class, valueType));
+    }
+
+    /**
+     * @param scoped whether the target is a method, which only uses the text during the call
+     */
+    GeneratedTextInvoker(String name, Class<?> type, BiConsumer<Object, Object> target, Converter<?> converter, boolean scoped, boolean intern) {
+        super(name, name, type, ACCEPT.bindTo(target), converter, scoped, intern);
+    }
+
+    /**
+     * @param target the function taking the primitive {@code type}, such as an {@link ObjIntConsumer} for {@code int}
+     */
+    GeneratedTextInvoker(String name, Class<?> type, Object target, boolean scoped) {
+        super(name, name, type, ACCEPT_PRIMITIVE.get(type).bindTo(target), null, scoped, false);
+    }
+
+    GeneratedTextInvoker(String name, Binder.Range target) {
+        super(name, name, char[].class, ACCEPT_RANGE.bindTo(target), null, true, false);
+    }
+}
@@ -0,0 +1,11 @@
+package org.brylex.parser;
+
+/**
+ * Creates the sub-handler instances bound to repeating elements, one per occurrence. The default creates them through
+ * their no-argument constructor.
+ */
+public interface InstanceFactory {
+
+    <T> T newInstance(Class<T> type);
+
+}
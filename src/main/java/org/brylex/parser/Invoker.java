@@ -1,5 +1,5 @@
 package org.brylex.parser;
 
 public interface Invoker {
-    void invoke(Object argument);
+    void invoke(Object handler, Object argument);
 }
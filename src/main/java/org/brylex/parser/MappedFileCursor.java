@@ -0,0 +1,53 @@
+package org.brylex.parser;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link ByteCursor} over a file channel, mapped into memory one window at a time so that files larger than a single
+ * mapping can be read. A token crossing the end of a window is re-read from a window starting at that token.
+ */
+final class MappedFileCursor extends ByteCursor {
+
+    static final int WINDOW = 1 << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private long offset;
+
+    MappedFileCursor(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.offset = channel.position();
+    }
+
+    @Override
+    int fill(int keep) throws XMLStreamException {
+
+        long end = offset + buffer().limit();
+        if (end >= size) {
+            return -1;
+        }
+
+        long from = offset + keep;
+        long length = Math.min(size - from, Math.max(WINDOW, 2L * (end - from)));
+        if (length > Integer.MAX_VALUE) {
+            throw new XMLStreamException("Token at offset [" + from + "] is too large to map.");
+        }
+
+        try {
+            input(channel.map(FileChannel.MapMode.READ_ONLY, from, length));
+        } catch (IOException e) {
+            throw new XMLStreamException("Unable to map file at offset [" + from + "].", e);
+        }
+        offset = from;
+
+        return 0;
+    }
+
+    @Override
+    boolean isComplete() {
+        return offset + buffer().limit() >= size;
+    }
+}
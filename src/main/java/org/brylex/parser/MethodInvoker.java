@@ -1,5 +1,8 @@
 package org.brylex.parser;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 
 /**
@@ -7,30 +10,34 @@ import java.lang.reflect.Method;
  */
 public class MethodInvoker implements Invoker {
 
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final Method method;
-    private final Object handler;
-    private final Class<?> argumentType;
+    private final MethodHandle handle;
+    private final String name;
 
-    public MethodInvoker(Method method, Object handler) {
+    public MethodInvoker(Method method) {
         this.method = method;
-        this.handler = handler;
-        this.argumentType = method.getParameterTypes()[0];
+        this.name = method.getDeclaringClass().getName() + "." + method.getName() + "()";
+
+        try {
+            method.setAccessible(true);
+            this.handle = MethodHandles.lookup().unreflect(method).asType(INVOKER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Unable to bind method [" + method + "].", e);
+        }
     }
 
     @Override
-    public void invoke(Object argument) {
+    public void invoke(Object handler, Object argument) {
 
         if (argument == null) {
             throw new IllegalArgumentException("Cannot invoke with [null] argument.");
         }
 
-        if (!argumentType.isAssignableFrom(argument.getClass())) {
-            return;
-        }
-
         try {
-            method.invoke(handler, argument);
-        } catch (Exception e) {
+            handle.invokeExact(handler, argument);
+        } catch (Throwable e) {
             throw new RuntimeException("Unable to invoke method [" + method + "] on handler [" + handler + "] using argument value [" + argument + "].", e);
         }
     }
@@ -42,16 +49,16 @@ public class MethodInvoker implements Invoker {
 
         MethodInvoker that = (MethodInvoker) o;
 
-        if (!handler.equals(that.handler)) return false;
-        if (!method.equals(that.method)) return false;
-
-        return true;
+        return method.equals(that.method);
     }
 
     @Override
     public int hashCode() {
-        int result = method.hashCode();
-        result = 31 * result + handler.hashCode();
-        return result;
+        return method.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
     }
 }
@@ -1,69 +1,29 @@
 package org.brylex.parser;
 
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class Node {
 
-    private static final Pattern PATTERN = Pattern.compile("(.+)\\[.*@(.+).*\\]");
-
-    private final String name;
+    private final Step step;
     private final NodeType type;
     private final Set<Invoker> invokers;
-    private final String idAttribute;
-    private final String idValue;
+    private final Set<Invoker> once;
 
     public Node(String name, NodeType type) {
-
-        Matcher matcher = PATTERN.matcher(name);
-
-        if (matcher.matches()) {
-
-            this.name = matcher.group(1);
-
-            String[] parts = matcher.group(2).split("=");
-            idAttribute = parts[0];
-            idValue = parts[1].replaceAll("'", "").replaceAll("\"", "");
-
-        } else {
-            this.name = name;
-            idAttribute = null;
-            idValue = null;
-        }
-
+        this.step = Step.parse(name);
         this.type = type;
         this.invokers = new HashSet<>();
+        this.once = new HashSet<>();
     }
 
-    public Node(XMLEvent event) {
-
-        StartElement element = event.asStartElement();
-
-        this.name = element.getName().getLocalPart();
-
-        Iterator attributes = element.getAttributes();
-        if (attributes.hasNext()) {
-            Attribute attribute = (Attribute) attributes.next();
-            this.idAttribute = attribute.getName().getLocalPart();
-            this.idValue = attribute.getValue();
-        } else {
-            this.idAttribute = null;
-            this.idValue = null;
-        }
-
-        this.type = NodeType.END_ELEMENT;
-        this.invokers = new HashSet<>();
+    public String getName() {
+        return step.getLocalName();
     }
 
-    public String getName() {
-        return name;
+    Step getStep() {
+        return step;
     }
 
     public NodeType getType() {
@@ -74,9 +34,21 @@ public class Node {
         this.invokers.add(invoker);
     }
 
-    public void invoke(Object argument) {
+    /**
+     * Adds an invoker whose binding fires at most once per handler.
+     */
+    void addOnce(Invoker invoker) {
+        this.invokers.add(invoker);
+        this.once.add(invoker);
+    }
+
+    boolean isOnce(Invoker invoker) {
+        return once.contains(invoker);
+    }
+
+    public void invoke(Object handler, Object argument) {
         for (Invoker invoker : invokers) {
-            invoker.invoke(argument);
+            invoker.invoke(handler, argument);
         }
     }
 
@@ -90,19 +62,16 @@ public class Node {
         if (o == null || getClass() != o.getClass()) return false;
 
         Node node = (Node) o;
-        return Objects.equals(name, node.name) &&
-                type == node.type &&
-                Objects.equals(idAttribute, node.idAttribute) &&
-                Objects.equals(idValue, node.idValue);
+        return step.equals(node.step) && type == node.type;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, type, idAttribute, idValue);
+        return Objects.hash(step, type);
     }
 
     @Override
     public String toString() {
-        return "Node(" + name + ", " + type + ", " + invokers + ")";
+        return "Node(" + step + ", " + type + ", " + invokers + ")";
     }
 }
@@ -0,0 +1,155 @@
+package org.brylex.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Splits a document into records on the calling thread and binds them on an executor. The calling thread only walks
+ * the record path and copies each record's tokens into a {@link RecordBuffer}; creating and filling the record and
+ * calling the consumer happen on the executor. At most {@link #MAX_IN_FLIGHT} records are buffered at any time.
+ */
+final class ParallelRecords<T> {
+
+    static final int MAX_IN_FLIGHT = 256;
+
+    private final State root;
+    private final Class<T> type;
+    private final InstanceFactory instanceFactory;
+    private final Executor executor;
+
+    ParallelRecords(String path, Class<T> type, InstanceFactory instanceFactory, Executor executor) {
+        for (String step : Step.split(path)) {
+            if (Step.parse(step).hasPosition()) {
+                throw new IllegalArgumentException("Position predicates are not supported for records bound in parallel: [" + path + "].");
+            }
+        }
+        this.root = BindingPlan.forRecords(path, type, (holder, record) -> ((Object[]) holder)[0] = record).getRoot();
+        this.type = type;
+        this.instanceFactory = instanceFactory;
+        this.executor = executor;
+    }
+
+    /**
+     * Hands every record to the consumer and returns once all of them have been consumed. Unordered, the consumer is
+     * called concurrently from the executor; ordered, it is called in document order on the calling thread.
+     */
+    void forEach(Cursor cursor, Consumer<? super T> consumer, boolean ordered) {
+
+        Deque<CompletableFuture<T>> pending = new ArrayDeque<>();
+        Semaphore permits = new Semaphore(MAX_IN_FLIGHT);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        State[] scopes = new State[16];
+        int depth = 0;
+        scopes[0] = root;
+
+        boolean completed = false;
+
+        try {
+
+            loop:
+            while (cursor.hasNext() && failure.get() == null) {
+
+                switch (cursor.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+
+                        State state = scopes[depth].next(cursor, null);
+                        if (state == null) {
+                            cursor.skipElement();
+                        } else if (state.getSubHandler() != null) {
+
+                            State scope = scopes[depth];
+                            RecordBuffer record = RecordBuffer.capture(cursor);
+
+                            if (ordered) {
+                                pending.add(CompletableFuture.supplyAsync(() -> bind(scope, record), executor));
+                                while (!pending.isEmpty() && (pending.peek().isDone() || pending.size() >= MAX_IN_FLIGHT)) {
+                                    consumer.accept(join(pending.poll()));
+                                }
+                            } else {
+                                permits.acquire();
+                                try {
+                                    CompletableFuture.runAsync(() -> consumer.accept(bind(scope, record)), executor)
+                                            .whenComplete((ignored, e) -> {
+                                                if (e != null) {
+                                                    failure.compareAndSet(null, e instanceof CompletionException ? e.getCause() : e);
+                                                }
+                                                permits.release();
+                                            });
+                                } catch (RejectedExecutionException e) {
+                                    // never runs, so nothing else would give the permit back
+                                    permits.release();
+                                    failure.compareAndSet(null, e);
+                                }
+                            }
+
+                        } else {
+                            if (++depth == scopes.length) {
+                                scopes = Arrays.copyOf(scopes, depth * 2);
+                            }
+                            scopes[depth] = state;
+                        }
+
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+
+                        if (depth == 0) {
+                            break loop;
+                        }
+                        depth--;
+
+                        break;
+                }
+            }
+
+            completed = true;
+
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Unable to parse stream.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while dispatching records.", e);
+        } finally {
+            if (!ordered) {
+                permits.acquireUninterruptibly(MAX_IN_FLIGHT);
+            } else if (!completed) {
+                pending.forEach(future -> future.cancel(false));
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            consumer.accept(join(pending.poll()));
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException("Unable to process record.", failure.get());
+        }
+    }
+
+    private T bind(State scope, RecordBuffer record) {
+        Object[] holder = new Object[1];
+        ParseContext context = new ParseContext(scope, instanceFactory);
+        context.start(holder);
+        context.run(record);
+        return type.cast(holder[0]);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Unable to process record.", e.getCause());
+        }
+    }
+}
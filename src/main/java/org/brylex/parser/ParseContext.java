@@ -0,0 +1,385 @@
+package org.brylex.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The mutable side of a parse: the stack of open elements and the text buffers. The loop in {@link #run(Cursor)} can
+ * be suspended from within a binding and resumed later on the same cursor, which is what pull-style record streams
+ * are built on.
+ */
+final class ParseContext {
+
+    /** The scope of an element whose sub-handler binding has already fired once: nothing inside it matches. */
+    private static final State NOTHING = new State("", null, 0);
+
+    private final State root;
+    private final InstanceFactory instanceFactory;
+    private final ParseListener listener;
+
+    private Object handler;
+
+    private TextBuffer[] buffers;
+
+    /*
+     * Per open element: the state it matched and the handler owning that state's bindings, plus the state and handler
+     * its children are matched against. The latter differ from the former only for elements bound to a sub-handler.
+     * In a plan shared by several handlers, the handler at the root is an array of them, indexed by each binding's
+     * slot.
+     */
+    private State[] states;
+    private Object[] owners;
+    private State[] scopes;
+    private Object[] scopeHandlers;
+
+    // per open element: how many children of each name with a position predicate it has had so far
+    private int[][] counters;
+
+    /*
+     * Per open element: the depth at which the handler its children are bound to was entered, and, for that depth,
+     * which of the handler's bindings firing at most once have fired.
+     */
+    private int[] scopeDepths;
+    private long[] fired;
+
+    // per reused sub-handler binding: its instance at each depth, kept until the context is cleared
+    private final Map<SubHandlerInvoker, Object[]> reused = new IdentityHashMap<>();
+
+    private int depth;
+    private boolean started;
+    private boolean suspended;
+    private boolean stopped;
+
+    ParseContext(State root, InstanceFactory instanceFactory) {
+        this(root, instanceFactory, null);
+    }
+
+    ParseContext(State root, InstanceFactory instanceFactory, ParseListener listener) {
+        this.root = root;
+        this.instanceFactory = instanceFactory;
+        this.listener = listener;
+        this.buffers = new TextBuffer[16];
+        this.states = new State[16];
+        this.owners = new Object[16];
+        this.counters = new int[16][];
+        this.scopes = new State[16];
+        this.scopeHandlers = new Object[16];
+        this.scopeDepths = new int[16];
+        this.fired = new long[16];
+    }
+
+    /**
+     * Prepares the context for a new document bound to the given handler; the next {@link #run(Cursor)} starts at the
+     * cursor's current position.
+     */
+    void start(Object handler) {
+        clear();
+        this.handler = handler;
+    }
+
+    /**
+     * Drops all references to handlers, so that an idle context does not keep them alive.
+     */
+    void clear() {
+        Arrays.fill(owners, 0, depth + 1, null);
+        Arrays.fill(scopeHandlers, 0, depth + 1, null);
+        reused.clear();
+        handler = null;
+        depth = 0;
+        started = false;
+        suspended = false;
+        stopped = false;
+    }
+
+    /**
+     * Asks the running loop to return once the current event has been handled.
+     */
+    void suspend() {
+        suspended = true;
+    }
+
+    /**
+     * Whether the last run stopped early, because all bindings of a plan whose bindings fire only once had fired.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Runs the bindings over the cursor. Sub-handlers are entered and left within this loop; nothing recurses per
+     * element. If the cursor starts inside a document, parsing stops at the end tag closing the element it started in.
+     *
+     * @return {@code true} if the loop was suspended and may be resumed, {@code false} once the input is exhausted
+     */
+    boolean run(Cursor cursor) {
+
+        if (!started) {
+            states[0] = root;
+            scopes[0] = root;
+            scopeHandlers[0] = handler;
+            scopeDepths[0] = 0;
+            fired[0] = 0;
+            resetCounters(root);
+        }
+        if (stopped) {
+            return false;
+        }
+        if (listener != null) {
+            cursor.setListener(listener);
+        }
+
+        try {
+
+            boolean advance = started || cursor.getEventType() != XMLStreamConstants.START_ELEMENT;
+            started = true;
+
+            while (!advance || cursor.hasNext()) {
+
+                int event = advance ? cursor.next() : cursor.getEventType();
+                advance = true;
+
+                if (listener != null) {
+                    listener.eventRead(event);
+                }
+
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+
+                        State state = scopes[depth].next(cursor, counters[depth]);
+                        if (state == null) {
+                            if (listener != null) {
+                                listener.elementSkipped(cursor.getLocalName());
+                            }
+                            cursor.skipElement();
+                            break;
+                        }
+                        if (listener != null) {
+                            listener.elementMatched(cursor.getLocalName());
+                        }
+
+                        Object owner = scopeHandlers[depth];
+
+                        if (++depth == states.length) {
+                            grow();
+                        }
+                        states[depth] = state;
+                        owners[depth] = owner;
+
+                        if (state.isTextRequired()) {
+                            buffer(depth).clear();
+                        }
+
+                        invokeStartElementHandlers(state, owner, cursor);
+
+                        SubHandlerInvoker subHandler = state.getSubHandler();
+                        if (subHandler == null) {
+                            scopes[depth] = state;
+                            scopeHandlers[depth] = owner;
+                            scopeDepths[depth] = scopeDepths[depth - 1];
+                        } else if (hasFired(state.getSubHandlerOnce())) {
+                            scopes[depth] = NOTHING;
+                            scopeHandlers[depth] = null;
+                            scopeDepths[depth] = scopeDepths[depth - 1];
+                        } else {
+                            scopes[depth] = subHandler.getScope();
+                            scopeHandlers[depth] = subHandler.isReused() ? reuse(subHandler) : subHandler.newInstance(instanceFactory);
+                            scopeDepths[depth] = depth;
+                            fired[depth] = 0;
+                        }
+                        resetCounters(scopes[depth]);
+
+                        if (stopped) {
+                            return false;
+                        }
+
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+
+                        if (depth == 0) {
+                            return false;
+                        }
+
+                        invokeFieldHandlers(states[depth], owners[depth], depth, cursor);
+
+                        if (states[depth].getSubHandler() != null && scopeHandlers[depth] != null && fire(states[depth].getSubHandlerOnce())) {
+                            invoke(states[depth].getSubHandler(), owner(owners[depth], states[depth].getSubHandlerSlot()), scopeHandlers[depth]);
+                        }
+
+                        owners[depth] = null;
+                        scopeHandlers[depth] = null;
+                        depth--;
+
+                        if (stopped) {
+                            return false;
+                        }
+
+                        if (suspended) {
+                            suspended = false;
+                            return true;
+                        }
+
+                        break;
+
+                    case XMLStreamConstants.START_DOCUMENT:
+
+                        depth = 0;
+
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        return false;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+
+                        if (states[depth].isTextRequired()) {
+                            buffers[depth].append(cursor.getTextCharacters(), cursor.getTextStart(), cursor.getTextLength());
+                            if (listener != null) {
+                                listener.textBuffered(cursor.getTextLength());
+                            }
+                        }
+
+                        break;
+                }
+            }
+
+            return false;
+
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Unable to parse stream.", e);
+        }
+    }
+
+    private void grow() {
+        int length = states.length * 2;
+        states = Arrays.copyOf(states, length);
+        owners = Arrays.copyOf(owners, length);
+        scopes = Arrays.copyOf(scopes, length);
+        scopeHandlers = Arrays.copyOf(scopeHandlers, length);
+        counters = Arrays.copyOf(counters, length);
+        scopeDepths = Arrays.copyOf(scopeDepths, length);
+        fired = Arrays.copyOf(fired, length);
+    }
+
+    /**
+     * Returns the instance of a reused sub-handler for the current depth, reset, or a new one the first time.
+     */
+    private Object reuse(SubHandlerInvoker subHandler) {
+
+        Object[] instances = reused.get(subHandler);
+        if (instances == null || instances.length <= depth) {
+            instances = instances == null ? new Object[depth + 1] : Arrays.copyOf(instances, depth + 1);
+            reused.put(subHandler, instances);
+        }
+
+        Object instance = instances[depth];
+        if (instance == null) {
+            instance = subHandler.newInstance(instanceFactory);
+            instances[depth] = instance;
+        } else {
+            subHandler.reset(instance);
+        }
+        return instance;
+    }
+
+    private void resetCounters(State scope) {
+        int count = scope.getCounters();
+        if (count > 0) {
+            if (counters[depth] == null || counters[depth].length < count) {
+                counters[depth] = new int[count];
+            } else {
+                Arrays.fill(counters[depth], 0, count, 0);
+            }
+        }
+    }
+
+    private void invokeStartElementHandlers(State state, Object owner, Cursor cursor) {
+        Invoker[] invokers = state.getStartInvokers();
+        int[] slots = state.getStartSlots();
+        int[] once = state.getStartOnce();
+        for (int i = 0; i < invokers.length; i++) {
+            if (once == null || fire(once[i])) {
+                invoke(invokers[i], slots != null ? owner(owner, slots[i]) : owner, cursor.asStartElement());
+            }
+        }
+    }
+
+    /**
+     * Whether the binding, numbered among those of the current element's handler firing at most once, has fired.
+     */
+    private boolean hasFired(int once) {
+        return once >= 0 && (fired[scopeDepths[depth - 1]] & 1L << once) != 0;
+    }
+
+    /**
+     * Records that a binding of the current element is about to fire, unless it fires at most once and already has.
+     * Stops parsing once all bindings of a plan that allows it have fired in the root handler.
+     */
+    private boolean fire(int once) {
+
+        if (once < 0) {
+            return true;
+        }
+
+        int scope = scopeDepths[depth - 1];
+        long bit = 1L << once;
+        if ((fired[scope] & bit) != 0) {
+            return false;
+        }
+        fired[scope] |= bit;
+
+        if (scope == 0 && root.getStopAfter() > 0 && Long.bitCount(fired[0]) == root.getStopAfter()) {
+            stopped = true;
+        }
+        return true;
+    }
+
+    private static Object owner(Object owner, int slot) {
+        return slot < 0 ? owner : ((Object[]) owner)[slot];
+    }
+
+    private void invoke(Invoker invoker, Object handler, Object argument) {
+
+        if (listener == null) {
+            invoker.invoke(handler, argument);
+        } else if (listener.isTimed()) {
+            long start = System.nanoTime();
+            invoker.invoke(handler, argument);
+            listener.bindingInvoked(invoker.toString(), System.nanoTime() - start);
+        } else {
+            invoker.invoke(handler, argument);
+            listener.bindingInvoked(invoker.toString(), -1);
+        }
+    }
+
+    private TextBuffer buffer(int depth) {
+        if (depth >= buffers.length) {
+            buffers = Arrays.copyOf(buffers, depth * 2);
+        }
+        if (buffers[depth] == null) {
+            buffers[depth] = new TextBuffer();
+        }
+        return buffers[depth];
+    }
+
+    private void invokeFieldHandlers(State state, Object owner, int depth, Cursor cursor) {
+        Invoker[] invokers = state.getEndInvokers();
+        int[] slots = state.getEndSlots();
+        int[] once = state.getEndOnce();
+        for (int i = 0; i < invokers.length; i++) {
+            if (once != null && !fire(once[i])) {
+                continue;
+            }
+            Invoker invoker = invokers[i];
+            Object target = slots != null ? owner(owner, slots[i]) : owner;
+            if (invoker instanceof TextInvoker) {
+                invoke(invoker, target, buffers[depth]);
+            } else {
+                invoke(invoker, target, cursor.asEndElement());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.brylex.parser;
+
+/**
+ * Observes what a parse does, for metrics and tracing. Listeners are called on the parsing thread for every event, so
+ * they must be cheap, and a listener shared between parsers must be thread-safe. A parser without a listener pays no
+ * more than a null check.
+ */
+public interface ParseListener {
+
+    /**
+     * An event was read from the input. Content of skipped elements is not read, and not reported.
+     */
+    default void eventRead(int eventType) {
+    }
+
+    /**
+     * An element matched a binding path, or lies on the way to one.
+     */
+    default void elementMatched(String localName) {
+    }
+
+    /**
+     * An element could not lead to any binding and was skipped together with its content.
+     */
+    default void elementSkipped(String localName) {
+    }
+
+    /**
+     * Characters of text were buffered for a binding.
+     */
+    default void textBuffered(int length) {
+    }
+
+    /**
+     * Bytes of input were read, by the parsers that tokenize bytes themselves: those of files, channels and pushed
+     * input. Parses through a StAX reader, which does not expose them, report none. Bytes are reported in batches,
+     * as the input is refilled and when the document ends or parsing stops.
+     */
+    default void bytesRead(long count) {
+    }
+
+    /**
+     * A binding was invoked; {@code binding} names the annotated method or field after the full name of the class
+     * declaring it, such as {@code com.example.Feed$Item.title}. The time spent in it is only measured if
+     * {@link #isTimed()}, and is {@code -1} otherwise.
+     */
+    default void bindingInvoked(String binding, long nanos) {
+    }
+
+    default boolean isTimed() {
+        return false;
+    }
+}
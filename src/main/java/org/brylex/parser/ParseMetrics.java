@@ -0,0 +1,134 @@
+package org.brylex.parser;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ParseListener} that counts. Counters are contended only as much as {@link LongAdder}s are, so one instance
+ * can be shared by all parsers of a feed and read while they run.
+ */
+public final class ParseMetrics implements ParseListener {
+
+    private final boolean timed;
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder text = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final ConcurrentMap<String, Binding> bindings = new ConcurrentHashMap<>();
+
+    public ParseMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param timed whether to measure the time spent in each binding, at the cost of two clock reads per invocation
+     */
+    public ParseMetrics(boolean timed) {
+        this.timed = timed;
+    }
+
+    @Override
+    public void eventRead(int eventType) {
+        events.increment();
+    }
+
+    @Override
+    public void elementMatched(String localName) {
+        matched.increment();
+    }
+
+    @Override
+    public void elementSkipped(String localName) {
+        skipped.increment();
+    }
+
+    @Override
+    public void textBuffered(int length) {
+        text.add(length);
+    }
+
+    @Override
+    public void bytesRead(long count) {
+        bytes.add(count);
+    }
+
+    @Override
+    public void bindingInvoked(String binding, long nanos) {
+
+        Binding counters = bindings.get(binding);
+        if (counters == null) {
+            counters = bindings.computeIfAbsent(binding, name -> new Binding());
+        }
+
+        counters.invocations.increment();
+        if (nanos >= 0) {
+            counters.nanos.add(nanos);
+        }
+    }
+
+    @Override
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    public long getMatchedElements() {
+        return matched.sum();
+    }
+
+    public long getSkippedElements() {
+        return skipped.sum();
+    }
+
+    /**
+     * The number of characters buffered for bindings.
+     */
+    public long getBufferedText() {
+        return text.sum();
+    }
+
+    /**
+     * The number of input bytes read; only counted for files, channels and pushed input.
+     */
+    public long getBytesRead() {
+        return bytes.sum();
+    }
+
+    /**
+     * Invocations per binding, by annotated method or field.
+     */
+    public Map<String, Long> getInvocations() {
+        Map<String, Long> invocations = new TreeMap<>();
+        bindings.forEach((binding, counters) -> invocations.put(binding, counters.invocations.sum()));
+        return invocations;
+    }
+
+    /**
+     * Nanoseconds spent per binding; empty unless timed.
+     */
+    public Map<String, Long> getInvocationNanos() {
+        Map<String, Long> nanos = new TreeMap<>();
+        if (timed) {
+            bindings.forEach((binding, counters) -> nanos.put(binding, counters.nanos.sum()));
+        }
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ParseMetrics(events=" + getEvents() + ", matched=" + getMatchedElements() + ", skipped=" + getSkippedElements() + ", text=" + getBufferedText() + ", bytes=" + getBytesRead() + ", invocations=" + getInvocations() + (timed ? ", nanos=" + getInvocationNanos() : "") + ")";
+    }
+
+    private static final class Binding {
+        final LongAdder invocations = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,23 @@
+package org.brylex.parser;
+
+import org.brylex.parser.annotation.Path;
+
+/**
+ * The {@link Path} bindings of a handler class, read from its annotations at build time. The path-parser annotation
+ * processor generates one per handler, named after it with a {@code $PathBindings} suffix; a plan for the handler
+ * finds it by that name and calls its members directly instead of finding them by reflection. Handlers without one
+ * are bound by reflection as before. The processor also registers the bindings as services, which the parser does
+ * not read, so that tools such as native-image can discover them.
+ */
+public interface PathBindings {
+
+    /**
+     * The handler class whose bindings these are.
+     */
+    Class<?> getType();
+
+    /**
+     * Declares every binding of the handler, as its annotations would.
+     */
+    void bind(Binder binder);
+}
@@ -1,259 +1,282 @@
 package org.brylex.parser;
 
-import org.brylex.parser.annotation.Path;
-import org.brylex.util.Tree;
-
 import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Set;
-import java.util.Stack;
-
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses documents into handlers through their {@link org.brylex.parser.annotation.Path} bindings. A parser holds no
+ * per-parse state: every call borrows a parse context from a pool and returns it afterwards, so one parser may be
+ * shared by any number of threads. A parser created for a handler instance parses into that instance by default;
+ * one created for a handler type takes the handler with each call.
+ * <p>
+ * A parser created by {@link #of(Object...)} feeds several handlers from one pass over each document. Calls taking
+ * a handler then take an {@code Object[]} holding one handler per type, in the order the parser was created with.
+ */
 public class PathParser {
 
-    private final Stack<StringBuilder> characterStack;
-    private final Tree<Node> tree;
+    private final BindingPlan plan;
+    private final Supplier<?> handler;
+    private final ContextPool contexts;
 
     public PathParser(Object handler) {
-        this(new Tree<Node>(new Node("/", NodeType.START_DOCUMENT)), handler);
+        this(handler, ConstructorInstanceFactory.INSTANCE);
     }
 
-    PathParser(Tree<Node> tree, Object handler) {
-        this.characterStack = new Stack<>();
-        this.tree = tree;
-
-        Method[] methods = handler.getClass().getDeclaredMethods();
-        for (Method method : methods) {
-
-            Path path = method.getAnnotation(Path.class);
-            if (path != null) {
-                apply(path, method, handler);
-            }
-        }
-
-        for (Field field : handler.getClass().getDeclaredFields()) {
-
-            Path path = field.getAnnotation(Path.class);
-            if (path != null) {
-                apply(path, field, handler);
-            }
-        }
+    public PathParser(Object handler, InstanceFactory instanceFactory) {
+        this(compile(handler.getClass()), () -> handler, instanceFactory, null);
     }
 
-    private void apply(Path path, Field field, Object handler) {
-
-        final LinkedList<String> nodes = new LinkedList<>(Arrays.asList(path.value().split("/")));
-        final String leafNode = nodes.removeLast();
-        final Tree<Node> trunk = buildTrunk(nodes);
-
-        Node node = new Node(leafNode, NodeType.END_ELEMENT);
-        FieldInvoker invoker = new FieldInvoker(field, handler);
-        applyInvoker(trunk, node, invoker);
+    /**
+     * @param instanceFactory creates sub-handlers, or {@code null} to use their no-arg constructors
+     * @param listener        observes every parse made through this parser, or {@code null}
+     */
+    public PathParser(Object handler, InstanceFactory instanceFactory, ParseListener listener) {
+        this(compile(handler.getClass()), () -> handler, instanceFactory, listener);
     }
 
-    private void apply(Path path, Method method, Object handler) {
-
-        final LinkedList<String> nodes = new LinkedList<>(Arrays.asList(path.value().split("/")));
-        final String leafNode = nodes.removeLast();
-        final Tree<Node> trunk = buildTrunk(nodes);
-
-        Class<?> parameterType = method.getParameterTypes()[0];
-        if (StartElement.class.isAssignableFrom(parameterType)) {
-
-            Node node = new Node(leafNode, NodeType.START_ELEMENT);
-            MethodInvoker invoker = new MethodInvoker(method, handler);
-            applyInvoker(trunk, node, invoker);
-
-        } else if (EndElement.class.isAssignableFrom(parameterType)) {
-
-            Node node = new Node(leafNode, NodeType.END_ELEMENT);
-            MethodInvoker invoker = new MethodInvoker(method, handler);
-            applyInvoker(trunk, node, invoker);
-
-        } else {
-
-            Node createNode = new Node(leafNode, NodeType.START_ELEMENT);
-            CreateInstanceInvoker createInstanceInvoker = new CreateInstanceInvoker(parameterType);
-            applyInvoker(trunk, createNode, createInstanceInvoker);
-
-            Node applyNode = new Node(leafNode, NodeType.END_ELEMENT);
-            Invoker subParserInvoker = new ApplySubParserInvoker(new MethodInvoker(method, handler), createInstanceInvoker);
-            applyInvoker(trunk, applyNode, subParserInvoker);
-        }
+    public PathParser(Class<?> type) {
+        this(type, ConstructorInstanceFactory.INSTANCE);
     }
 
-    private void applyInvoker(Tree<Node> trunk, Node node, Invoker invoker) {
-        Tree<Node> t = trunk.getTree(node);
-        if (t == null) {
-            node.add(invoker);
-            trunk.addLeaf(node);
-        } else {
-            t.getHead().add(invoker);
-        }
+    public PathParser(Class<?> type, InstanceFactory instanceFactory) {
+        this(compile(type), () -> null, instanceFactory, null);
     }
 
-    private Tree<Node> buildTrunk(LinkedList<String> nodes) {
-        Tree<Node> parent = tree;
-        for (String step : nodes) {
-
-            if (step.length() == 0) {
-                continue;
-            }
+    public PathParser(Class<?> type, InstanceFactory instanceFactory, ParseListener listener) {
+        this(compile(type), () -> null, instanceFactory, listener);
+    }
 
-            Node node = new Node(step, NodeType.START_ELEMENT);
+    /**
+     * @param handler supplies the handler for calls not given one; supplying {@code null} makes them fail
+     */
+    PathParser(BindingPlan plan, Supplier<?> handler, InstanceFactory instanceFactory, ParseListener listener) {
+        this.plan = plan;
+        this.handler = handler;
+        this.contexts = new ContextPool(plan.getRoot(), instanceFactory != null ? instanceFactory : ConstructorInstanceFactory.INSTANCE, listener);
+    }
 
-            Tree<Node> t = parent.getTree(node);
-            if (t == null) {
-                parent = parent.addLeaf(node);
-            } else {
-                parent = t;
-            }
-        }
-        return parent;
+    /**
+     * Returns a parser feeding all the given handlers from a single pass over each document. Their paths are merged
+     * into one plan, and every binding fires on the handler that declared it. Paths of one handler may not continue
+     * below an element bound to a sub-handler.
+     */
+    public static PathParser of(Object... handlers) {
+        return of(Arrays.asList(handlers), null, null);
     }
 
-    private XMLEventReader xmlEventReader;
+    public static PathParser of(List<?> handlers, InstanceFactory instanceFactory, ParseListener listener) {
 
-    public void parse(XMLEventReader reader) {
+        List<Class<?>> types = new ArrayList<>();
+        for (Object handler : handlers) {
+            types.add(handler.getClass());
+        }
 
-        this.xmlEventReader = reader;
+        Object[] array = handlers.toArray();
+        return new PathParser(BindingPlan.merge(types), () -> array, instanceFactory, listener);
+    }
 
-        Tree<Node> parseTree = tree;
+    /**
+     * As {@link #of(Object...)} for handler types, each parse taking new handlers from the suppliers unless given its
+     * own. Handlers are fed in the map's iteration order.
+     */
+    public static PathParser of(Map<? extends Class<?>, ? extends Supplier<?>> suppliers) {
+        return of(suppliers, null, null);
+    }
 
-        final Stack<StartElement> stack = new Stack<>();
+    public static PathParser of(Map<? extends Class<?>, ? extends Supplier<?>> suppliers, InstanceFactory instanceFactory, ParseListener listener) {
 
-        try {
+        List<Class<?>> types = new ArrayList<>(suppliers.keySet());
+        List<Supplier<?>> list = new ArrayList<>(suppliers.values());
 
-            if (!reader.peek().isStartDocument()) {
-                parseTree = tree.getTree(new Node("/", NodeType.START_ELEMENT));
+        return new PathParser(BindingPlan.merge(types), () -> {
+            Object[] handlers = new Object[list.size()];
+            for (int i = 0; i < handlers.length; i++) {
+                handlers[i] = list.get(i).get();
             }
+            return handlers;
+        }, instanceFactory, listener);
+    }
 
-            int balance = 0;
-            int ignore = 0;
-
-            while (reader.hasNext()) {
-
-                XMLEvent event = reader.peek();
-                if (event.getEventType() == XMLStreamConstants.END_ELEMENT && balance == 0) {
-                    return;
-                } else {
-                    reader.nextEvent();
-                }
-
-                switch (event.getEventType()) {
-                    case XMLStreamConstants.START_ELEMENT:
-
-                        stack.push(event.asStartElement());
+    /**
+     * Returns the compiled {@link BindingPlan} for the given handler type. Plans are built once per class and cached.
+     */
+    public static BindingPlan compile(Class<?> type) {
+        return BindingPlan.of(type);
+    }
 
-                        balance++;
+    /**
+     * Returns a lazy stream of the records found at {@code path}, each an instance of {@code type} filled through its
+     * own {@link org.brylex.parser.annotation.Path} bindings. A record is only parsed when the stream asks for it, and
+     * elements outside the record path are skipped. Closing the stream closes the reader.
+     */
+    public static <T> Stream<T> stream(XMLStreamReader reader, String path, Class<T> type) {
+        return stream(reader, path, type, ConstructorInstanceFactory.INSTANCE);
+    }
 
-                        characterStack.push(new StringBuilder());
+    public static <T> Stream<T> stream(XMLStreamReader reader, String path, Class<T> type, InstanceFactory instanceFactory) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(reader, path, type, instanceFactory), Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (XMLStreamException e) {
+                        throw new RuntimeException("Unable to close stream.", e);
+                    }
+                });
+    }
 
-                        if (ignore == 0) {
-                            Tree<Node> t = invokeStartElementHandlers(parseTree, event.asStartElement());
-                            if (t == null) {
+    /**
+     * Iterator form of {@link #stream(XMLStreamReader, String, Class)}; the reader is left open.
+     */
+    public static <T> Iterator<T> iterator(XMLStreamReader reader, String path, Class<T> type) {
+        return iterator(reader, path, type, ConstructorInstanceFactory.INSTANCE);
+    }
 
-                                Node node = new Node(event);
-                                if (parseTree.getTree(node) == null) {
-                                    ignore++;
-                                }
+    public static <T> Iterator<T> iterator(XMLStreamReader reader, String path, Class<T> type, InstanceFactory instanceFactory) {
+        return new RecordIterator<>(new StreamReaderCursor(reader), path, type, instanceFactory);
+    }
 
-                            } else {
-                                parseTree = t;
-                            }
-                        } else {
-                            ignore++;
-                        }
+    /**
+     * Binds the records found at {@code path} in parallel on the common fork/join pool and hands each to the consumer,
+     * which must be thread-safe. Returns once every record has been consumed. The calling thread reads the input and
+     * only copies out the tokens of each record; the reader is left open.
+     */
+    public static <T> void forEachParallel(XMLStreamReader reader, String path, Class<T> type, Consumer<? super T> consumer) {
+        forEachParallel(reader, path, type, consumer, ForkJoinPool.commonPool(), false);
+    }
 
-                        break;
+    /**
+     * As {@link #forEachParallel(XMLStreamReader, String, Class, Consumer)}, binding on the given executor. When
+     * {@code ordered}, records are still bound in parallel but consumed one at a time, in document order, on the
+     * calling thread.
+     */
+    public static <T> void forEachParallel(XMLStreamReader reader, String path, Class<T> type, Consumer<? super T> consumer, Executor executor, boolean ordered) {
+        new ParallelRecords<>(path, type, ConstructorInstanceFactory.INSTANCE, executor).forEach(new StreamReaderCursor(reader), consumer, ordered);
+    }
 
-                    case XMLStreamConstants.END_ELEMENT:
+    public void parse(XMLEventReader reader) {
+        parse(new EventReaderCursor(reader), handler.get());
+    }
 
-                        StartElement startElement = stack.pop();
-                        if (!startElement.getName().equals(event.asEndElement().getName())) {
-                            throw new IllegalStateException("Unexpected END element [" + event.asEndElement() + "].");
-                        }
+    public void parse(XMLEventReader reader, Object handler) {
+        parse(new EventReaderCursor(reader), handler);
+    }
 
-                        balance--;
+    /**
+     * Parses from the reader's current position. Event objects are only created for handler methods that take a
+     * {@link StartElement} or {@link EndElement}. If parsing stops early because every binding fires only
+     * {@link org.brylex.parser.annotation.Path#once() once}, the reader is closed; its underlying source is not.
+     */
+    public void parse(XMLStreamReader reader) {
+        parse(new StreamReaderCursor(reader), handler.get());
+    }
 
-                        StringBuilder stringBuilder = characterStack.pop();
+    public void parse(XMLStreamReader reader, Object handler) {
+        parse(new StreamReaderCursor(reader), handler);
+    }
 
-                        if (ignore > 0) {
+    /**
+     * Parses a local UTF-8 or ASCII file without a {@link java.io.Reader} or StAX in between: the file is mapped into
+     * memory and tokenized byte by byte. Element names are matched without decoding them, and only text and attribute
+     * values that are bound get decoded. Documents in other encodings are rejected.
+     */
+    public void parse(java.nio.file.Path file) {
+        parse(file, handler.get());
+    }
 
-                            ignore--;
+    public void parse(java.nio.file.Path file, Object handler) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            parse(channel, handler);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read file [" + file + "].", e);
+        }
+    }
 
-                        }  else {
-                            Tree<Node> t = invokeFieldHandlers(parseTree, stringBuilder.toString(), event.asEndElement(), startElement);
-                            parseTree = t != null ? t : parseTree;
-                        }
+    /**
+     * As {@link #parse(java.nio.file.Path)}, from the channel's current position to its end. The channel is left open.
+     */
+    public void parse(FileChannel channel) {
+        parse(channel, handler.get());
+    }
 
-                        break;
+    public void parse(FileChannel channel, Object handler) {
+        try {
+            parse(new MappedFileCursor(channel), handler);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read channel.", e);
+        }
+    }
 
-                    case XMLStreamConstants.START_DOCUMENT:
+    /**
+     * Returns a parser for one document that is pushed in as bytes arrive, instead of being read by the calling
+     * thread. See {@link PushParser}.
+     */
+    public PushParser push() {
+        return push(handler.get());
+    }
 
-                        parseTree = tree.getTree(new Node("/", NodeType.START_DOCUMENT));
+    public PushParser push(Object handler) {
+        check(handler);
+        return new PushParser(contexts, handler);
+    }
 
-                        break;
-                    case XMLStreamConstants.END_DOCUMENT:
-                        break;
-                    case XMLStreamConstants.CHARACTERS:
+    void parse(Cursor cursor, Object handler) {
 
-                        characterStack.peek().append(event.asCharacters().getData());
+        check(handler);
 
-                        break;
-                    default:
-                        System.out.println("Event: [" + event + "]");
-                }
+        ParseContext context = contexts.acquire(handler);
+        try {
+            context.run(cursor);
+            if (context.isStopped()) {
+                cursor.close();
             }
         } catch (XMLStreamException e) {
-            throw new RuntimeException("Unable to parse stream.", e);
+            throw new RuntimeException("Unable to close stream.", e);
+        } finally {
+            contexts.release(context);
         }
     }
 
-    private Tree<Node> invokeStartElementHandlers(Tree<Node> parseTree, StartElement startElement) {
-
-        String elementName = startElement.getName().getLocalPart();
-        Tree<Node> subTree = parseTree.getTree(new Node(elementName, NodeType.START_ELEMENT));
+    private void check(Object handler) {
 
-        if (subTree != null) {
-
-            Node head = subTree.getHead();
-
-            for (Invoker invoker : head.getInvokers()) {
-                if (invoker instanceof CreateInstanceInvoker) {
-                    invoker.invoke(xmlEventReader);
-                } else {
-                    invoker.invoke(startElement);
-                }
+        if (handler == null) {
+            throw new IllegalStateException("No handler given for parser of [" + plan.getTypeNames() + "].");
+        }
+        if (!plan.isMerged()) {
+            if (!plan.getType().isInstance(handler)) {
+                throw new IllegalArgumentException("Handler [" + handler + "] is not an instance of [" + plan.getType().getName() + "].");
             }
-
-            return subTree;
-
+            return;
         }
 
-        return null;
-    }
-
-    private Tree<Node> invokeFieldHandlers(Tree<Node> parseTree, String fieldValue, EndElement endElement, StartElement startElement) {
-
-        Tree<Node> subTree = parseTree.getTree(new Node(startElement));
-
-        if (subTree != null) {
-            subTree.getHead().invoke(fieldValue);
-            subTree.getHead().invoke(endElement);
-
-            return subTree;
+        List<Class<?>> types = plan.getTypes();
+        if (!(handler instanceof Object[]) || ((Object[]) handler).length != types.size()) {
+            throw new IllegalArgumentException("Expected an array of handlers of [" + plan.getTypeNames() + "].");
+        }
+        for (int i = 0; i < types.size(); i++) {
+            Object element = ((Object[]) handler)[i];
+            if (!types.get(i).isInstance(element)) {
+                throw new IllegalArgumentException("Handler [" + element + "] at index " + i + " is not an instance of [" + types.get(i).getName() + "].");
+            }
         }
-
-        return null;
     }
 
 }
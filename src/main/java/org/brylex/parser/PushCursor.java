@@ -0,0 +1,60 @@
+package org.brylex.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link ByteCursor} over bytes pushed in as they arrive. Running out of bytes is not the end of the document until
+ * {@link #complete()} has been called; until then the cursor simply has no next event.
+ */
+final class PushCursor extends ByteCursor {
+
+    private byte[] data = new byte[8192];
+    private int length;
+    private boolean complete;
+
+    void append(ByteBuffer bytes) {
+
+        int count = bytes.remaining();
+        if (length + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(length + count, data.length * 2));
+        }
+
+        bytes.get(data, length, count);
+        length += count;
+    }
+
+    void complete() {
+        complete = true;
+    }
+
+    @Override
+    int fill(int keep) {
+
+        if (length == buffer().limit()) {
+            return -1;
+        }
+
+        if (keep > 0) {
+            System.arraycopy(data, keep, data, 0, length - keep);
+            length -= keep;
+        }
+        input(ByteBuffer.wrap(data, 0, length));
+
+        return 0;
+    }
+
+    @Override
+    boolean isComplete() {
+        return complete && length == buffer().limit();
+    }
+
+    /**
+     * A pushed document ends with its root element, so that the parser is done without waiting for the end of input;
+     * whatever follows on the stream is not part of it.
+     */
+    @Override
+    boolean readsEpilog() {
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+package org.brylex.parser;
+
+import javax.xml.stream.XMLStreamConstants;
+import java.nio.ByteBuffer;
+
+/**
+ * Parses one UTF-8 or ASCII document from bytes pushed in as they arrive, for input that should not hold a thread
+ * while waiting, such as uploads or sockets served from an event loop. Each {@link #feed(ByteBuffer)} runs the
+ * bindings as far as the bytes received so far allow and returns; handlers fire as soon as their elements are
+ * complete. Everything in between is kept in the parser, never on a stack.
+ * <p>
+ * A push parser is meant to be driven by one thread at a time. Obtain one from {@link PathParser#push(Object)}.
+ */
+public final class PushParser {
+
+    private final ContextPool contexts;
+    private final PushCursor cursor = new PushCursor();
+
+    private ParseContext context;
+    private boolean failed;
+
+    PushParser(ContextPool contexts, Object handler) {
+        this.contexts = contexts;
+        this.context = contexts.acquire(handler);
+    }
+
+    /**
+     * Parses the buffer's remaining bytes, which are consumed. A token split across buffers is completed by the
+     * following ones; bytes after the end of the document are ignored.
+     */
+    public void feed(ByteBuffer bytes) {
+
+        if (failed) {
+            throw new IllegalStateException("Parser failed on earlier input.");
+        }
+        if (isDone()) {
+            bytes.position(bytes.limit());
+            return;
+        }
+
+        cursor.append(bytes);
+        run();
+    }
+
+    /**
+     * Signals that no more input will come, and fails if the document is incomplete.
+     */
+    public void endOfInput() {
+
+        if (failed) {
+            throw new IllegalStateException("Parser failed on earlier input.");
+        }
+        if (isDone()) {
+            return;
+        }
+
+        cursor.complete();
+        run();
+    }
+
+    /**
+     * Whether the document's root element has ended, or parsing stopped early because every binding fires only once
+     * and all of them have.
+     */
+    public boolean isDone() {
+        return context == null;
+    }
+
+    private void run() {
+
+        try {
+            context.run(cursor);
+        } catch (RuntimeException e) {
+            failed = true;
+            release();
+            throw e;
+        }
+
+        if (context.isStopped()) {
+            cursor.close();
+            release();
+        } else if (cursor.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+            release();
+        }
+    }
+
+    private void release() {
+        contexts.release(context);
+        context = null;
+    }
+}
@@ -0,0 +1,262 @@
+package org.brylex.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tokens of one element and its content, copied off a cursor into flat arrays so that another thread can replay
+ * them. A buffer is itself a {@link Cursor} positioned before its first token; it is read once, by one thread.
+ * Namespace declarations are not kept, so events created from it carry element and attribute names only.
+ */
+final class RecordBuffer implements Cursor {
+
+    private static final ThreadLocal<XMLEventFactory> EVENT_FACTORY = ThreadLocal.withInitial(XMLEventFactory::newFactory);
+
+    // per token: event type, and element index or text offset, and attribute offset or text length
+    private int[] types = new int[16];
+    private int[] first = new int[16];
+    private int[] second = new int[16];
+    private int tokens;
+
+    private String[] localNames = new String[8];
+    private String[] namespaceURIs = new String[8];
+    private String[] prefixes = new String[8];
+    private int[] attributeOffsets = new int[9];
+    private int elements;
+
+    private String[] attributeNames = new String[8];
+    private String[] attributeNamespaces = new String[8];
+    private String[] attributePrefixes = new String[8];
+    private String[] attributeValues = new String[8];
+    private int attributes;
+
+    private char[] text = new char[256];
+    private int textLength;
+
+    private int position = -1;
+
+    /**
+     * Copies the element the cursor is on, leaving the cursor on its end tag.
+     */
+    static RecordBuffer capture(Cursor cursor) throws XMLStreamException {
+
+        RecordBuffer buffer = new RecordBuffer();
+
+        int[] open = new int[16];
+        int depth = 0;
+
+        for (int event = cursor.getEventType(); ; event = cursor.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = buffer.addStartElement(cursor);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    buffer.addToken(XMLStreamConstants.END_ELEMENT, open[--depth], 0);
+                    if (depth == 0) {
+                        return buffer;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    buffer.addText(cursor.getTextCharacters(), cursor.getTextStart(), cursor.getTextLength());
+                    break;
+            }
+        }
+    }
+
+    private int addStartElement(Cursor cursor) {
+
+        if (elements + 1 == localNames.length) {
+            int length = localNames.length * 2;
+            localNames = Arrays.copyOf(localNames, length);
+            namespaceURIs = Arrays.copyOf(namespaceURIs, length);
+            prefixes = Arrays.copyOf(prefixes, length);
+            attributeOffsets = Arrays.copyOf(attributeOffsets, length + 1);
+        }
+
+        int element = elements++;
+        localNames[element] = cursor.getLocalName();
+        namespaceURIs[element] = cursor.getNamespaceURI();
+        prefixes[element] = cursor.getPrefix();
+
+        for (int i = 0; i < cursor.getAttributeCount(); i++) {
+
+            if (attributes == attributeNames.length) {
+                int length = attributeNames.length * 2;
+                attributeNames = Arrays.copyOf(attributeNames, length);
+                attributeNamespaces = Arrays.copyOf(attributeNamespaces, length);
+                attributePrefixes = Arrays.copyOf(attributePrefixes, length);
+                attributeValues = Arrays.copyOf(attributeValues, length);
+            }
+
+            attributeNames[attributes] = cursor.getAttributeLocalName(i);
+            attributeNamespaces[attributes] = cursor.getAttributeNamespace(i);
+            attributePrefixes[attributes] = cursor.getAttributePrefix(i);
+            attributeValues[attributes] = cursor.getAttributeValue(i);
+            attributes++;
+        }
+        attributeOffsets[element + 1] = attributes;
+
+        addToken(XMLStreamConstants.START_ELEMENT, element, 0);
+
+        return element;
+    }
+
+    private void addText(char[] characters, int start, int length) {
+
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(textLength + length, text.length * 2));
+        }
+        System.arraycopy(characters, start, text, textLength, length);
+
+        addToken(XMLStreamConstants.CHARACTERS, textLength, length);
+        textLength += length;
+    }
+
+    private void addToken(int type, int a, int b) {
+
+        if (tokens == types.length) {
+            int length = tokens * 2;
+            types = Arrays.copyOf(types, length);
+            first = Arrays.copyOf(first, length);
+            second = Arrays.copyOf(second, length);
+        }
+
+        types[tokens] = type;
+        first[tokens] = a;
+        second[tokens] = b;
+        tokens++;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position + 1 < tokens;
+    }
+
+    @Override
+    public int next() {
+        return types[++position];
+    }
+
+    @Override
+    public int getEventType() {
+        return position < 0 ? XMLStreamConstants.START_DOCUMENT : types[position];
+    }
+
+    @Override
+    public void skipElement() {
+        int depth = 1;
+        while (depth > 0) {
+            switch (types[++position]) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String getLocalName() {
+        return localNames[first[position]];
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return namespaceURIs[first[position]];
+    }
+
+    @Override
+    public String getPrefix() {
+        return prefixes[first[position]];
+    }
+
+    @Override
+    public String getAttributeValue(QName name) {
+        int element = first[position];
+        for (int i = attributeOffsets[element]; i < attributeOffsets[element + 1]; i++) {
+            if (attributeNames[i].equals(name.getLocalPart()) && name.getNamespaceURI().equals(nonNull(attributeNamespaces[i]))) {
+                return attributeValues[i];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        int element = first[position];
+        return attributeOffsets[element + 1] - attributeOffsets[element];
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributeNames[attributeOffsets[first[position]] + index];
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return attributeNamespaces[attributeOffsets[first[position]] + index];
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return attributePrefixes[attributeOffsets[first[position]] + index];
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return attributeValues[attributeOffsets[first[position]] + index];
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        return text;
+    }
+
+    @Override
+    public int getTextStart() {
+        return first[position];
+    }
+
+    @Override
+    public int getTextLength() {
+        return second[position];
+    }
+
+    @Override
+    public StartElement asStartElement() {
+
+        XMLEventFactory factory = EVENT_FACTORY.get();
+
+        List<Attribute> list = new ArrayList<>(getAttributeCount());
+        for (int i = 0; i < getAttributeCount(); i++) {
+            list.add(factory.createAttribute(nonNull(getAttributePrefix(i)), nonNull(getAttributeNamespace(i)), getAttributeLocalName(i), getAttributeValue(i)));
+        }
+
+        return factory.createStartElement(nonNull(getPrefix()), nonNull(getNamespaceURI()), getLocalName(), list.iterator(), Collections.emptyIterator());
+    }
+
+    @Override
+    public EndElement asEndElement() {
+        return EVENT_FACTORY.get().createEndElement(nonNull(getPrefix()), nonNull(getNamespaceURI()), getLocalName());
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+}
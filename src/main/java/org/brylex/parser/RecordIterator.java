@@ -0,0 +1,57 @@
+package org.brylex.parser;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls records off a cursor one at a time. The parse only advances when the consumer asks for the next record, and
+ * only the current record is held, so memory use does not grow with the input.
+ */
+final class RecordIterator<T> implements Iterator<T> {
+
+    private final Class<T> type;
+    private final Cursor cursor;
+    private final ParseContext context;
+
+    private T next;
+    private boolean exhausted;
+
+    RecordIterator(Cursor cursor, String path, Class<T> type, InstanceFactory instanceFactory) {
+        this.type = type;
+        this.cursor = cursor;
+
+        BindingPlan plan = BindingPlan.forRecords(path, type, (handler, record) -> offer(record));
+        this.context = new ParseContext(plan.getRoot(), instanceFactory);
+        this.context.start(new Object());
+    }
+
+    private void offer(Object record) {
+        next = type.cast(record);
+        context.suspend();
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        if (next == null && !exhausted) {
+            exhausted = !context.run(cursor);
+            if (exhausted) {
+                context.clear();
+            }
+        }
+
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T record = next;
+        next = null;
+        return record;
+    }
+}
@@ -0,0 +1,48 @@
+package org.brylex.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+
+/**
+ * Passes the converted text of an element to a single-argument method, or its characters to a method taking them
+ * as a {@code (char[], int, int)} range.
+ */
+public class SetterInvoker extends TextInvoker {
+
+    private final Method method;
+
+    public SetterInvoker(Method method, Converter<?> converter) {
+        this(method, converter, false);
+    }
+
+    public SetterInvoker(Method method, Converter<?> converter, boolean intern) {
+        super(method, method.getParameterTypes()[0], handle(method), converter, intern);
+        this.method = method;
+    }
+
+    private static MethodHandle handle(Method method) {
+        try {
+            method.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            return handle.asType(handle.type().changeReturnType(void.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Unable to bind method [" + method + "].", e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SetterInvoker)) return false;
+
+        SetterInvoker that = (SetterInvoker) o;
+
+        return method.equals(that.method);
+    }
+
+    @Override
+    public int hashCode() {
+        return method.hashCode();
+    }
+}
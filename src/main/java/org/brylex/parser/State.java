@@ -0,0 +1,563 @@
+package org.brylex.parser;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+/**
+ * A state of the compiled path automaton. Outgoing transitions are keyed on interned element local names, so
+ * resolving the next state for an element neither allocates nor hashes anything but the (cached) name hash. Steps
+ * with predicates are tried before the plain step of the same name; those testing an attribute value are indexed by
+ * that value, so any number of them costs one attribute lookup and one hash probe per element. Names without a
+ * transition of their own take the state's other transition, if any.
+ * <p>
+ * States are first compiled as a tree mirroring the paths, in which {@code *} steps are transitions on the name
+ * {@code *} and steps after {@code //} are kept apart as descendant transitions. Plans using either are then turned
+ * into deterministic states by {@link Determinizer}, so that every element still resolves to exactly one state.
+ */
+final class State {
+
+    private static final Invoker[] NO_INVOKERS = new Invoker[0];
+
+    /** Above this many distinct child names the transitions are indexed by a hash map instead of scanned. */
+    private static final int LINEAR_LIMIT = 8;
+
+    private final String name;
+    private final Step step;
+    private final int order;
+
+    private Invoker[] startInvokers = NO_INVOKERS;
+    private Invoker[] endInvokers = NO_INVOKERS;
+    private boolean textRequired;
+    private SubHandlerInvoker subHandler;
+
+    // in a plan shared by several handlers: the index of the handler owning each binding, otherwise null
+    private int[] startSlots;
+    private int[] endSlots;
+    private int subHandlerSlot = -1;
+
+    // the number of each binding that fires at most once per handler, or -1; null if there are none
+    private int[] startOnce;
+    private int[] endOnce;
+    private int subHandlerOnce = -1;
+
+    private int stopAfter;
+
+    private String[] names = new String[0];
+    private Transition[] transitions = new Transition[0];
+    private Map<String, Transition> index;
+    private Transition other;
+    private Map<String, Transition> descendants;
+    private int counters;
+
+    State(String name, Step step, int order) {
+        this.name = name;
+        this.step = step;
+        this.order = order;
+    }
+
+    Invoker[] getStartInvokers() {
+        return startInvokers;
+    }
+
+    Invoker[] getEndInvokers() {
+        return endInvokers;
+    }
+
+    /**
+     * For a plan shared by several handlers, the index of the handler owning each start invoker; {@code null} if the
+     * plan has a single handler.
+     */
+    int[] getStartSlots() {
+        return startSlots;
+    }
+
+    int[] getEndSlots() {
+        return endSlots;
+    }
+
+    /**
+     * The number of each start invoker's binding among those of its plan that fire at most once per handler, or -1
+     * for others; {@code null} if none of them fires only once.
+     */
+    int[] getStartOnce() {
+        return startOnce;
+    }
+
+    int[] getEndOnce() {
+        return endOnce;
+    }
+
+    /**
+     * The sub-handler bound to this element, if any. Its plan, not this state, resolves the element's children.
+     */
+    SubHandlerInvoker getSubHandler() {
+        return subHandler;
+    }
+
+    int getSubHandlerSlot() {
+        return subHandlerSlot;
+    }
+
+    int getSubHandlerOnce() {
+        return subHandlerOnce;
+    }
+
+    /**
+     * For the root state of a plan all of whose bindings fire at most once, their number: once that many have fired
+     * in the root handler nothing else can match, and parsing stops. Zero for other plans and states.
+     */
+    int getStopAfter() {
+        return stopAfter;
+    }
+
+    void setStopAfter(int stopAfter) {
+        this.stopAfter = stopAfter;
+    }
+
+    /**
+     * Whether any binding of this state consumes the element text. Text is not buffered for other states.
+     */
+    boolean isTextRequired() {
+        return textRequired;
+    }
+
+    /**
+     * The number of sibling counters elements in this state need for position predicates on their children.
+     */
+    int getCounters() {
+        return counters;
+    }
+
+    /**
+     * Resolves the state for a child element, or {@code null} if no binding can match it or any of its descendants.
+     *
+     * @param counters this state's sibling counters for the current element, sized by {@link #getCounters()}
+     */
+    State next(Cursor cursor, int[] counters) {
+
+        Transition transition = transition(cursor.getLocalName());
+        if (transition == null) {
+            transition = other;
+            if (transition == null) {
+                return null;
+            }
+        }
+
+        return transition.select(cursor, counters);
+    }
+
+    /**
+     * The transition on exactly this name, ignoring the other transition.
+     */
+    Transition transition(String localName) {
+
+        if (index != null) {
+            return index.get(localName);
+        }
+
+        String[] names = this.names;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] == localName) {
+                return transitions[i];
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(localName)) {
+                return transitions[i];
+            }
+        }
+
+        return null;
+    }
+
+    Step getStep() {
+        return step;
+    }
+
+    String[] getNames() {
+        return names;
+    }
+
+    Set<String> getDescendantNames() {
+        return descendants != null ? descendants.keySet() : Collections.emptySet();
+    }
+
+    Transition descendant(String localName) {
+        return descendants != null ? descendants.get(localName) : null;
+    }
+
+    /**
+     * Whether this state is preferred over the other when both match: the one with more conditions wins, then the
+     * one compiled first.
+     */
+    private boolean ranksBefore(State other) {
+        int conditions = step.getConditionCount();
+        int otherConditions = other.step.getConditionCount();
+        return conditions > otherConditions || conditions == otherConditions && order < other.order;
+    }
+
+    /**
+     * @param slot the index of the handler owning the invoker in a plan shared by several handlers, or -1
+     * @param once the number of the binding among those firing at most once, or -1
+     */
+    void addStartInvoker(Invoker invoker, int slot, int once) {
+
+        if (invoker instanceof SubHandlerInvoker) {
+            if (subHandler != null && !subHandler.equals(invoker)) {
+                throw new IllegalArgumentException("Only one sub-handler can be bound to " + this + ", found [" + subHandler.getType().getName() + "] and [" + ((SubHandlerInvoker) invoker).getType().getName() + "].");
+            }
+            subHandler = (SubHandlerInvoker) invoker;
+            subHandlerSlot = slot;
+            subHandlerOnce = once;
+            return;
+        }
+
+        int length = startInvokers.length;
+        this.startSlots = append(startSlots, length, slot);
+        this.startOnce = append(startOnce, length, once);
+        this.startInvokers = append(startInvokers, invoker);
+    }
+
+    void addEndInvoker(Invoker invoker, int slot, int once) {
+
+        int length = endInvokers.length;
+        this.endSlots = append(endSlots, length, slot);
+        this.endOnce = append(endOnce, length, once);
+        this.endInvokers = append(endInvokers, invoker);
+
+        textRequired |= invoker instanceof TextInvoker;
+    }
+
+    /**
+     * Returns the child state for the given step, creating it if needed. Only used while compiling a plan.
+     */
+    State child(Step step) {
+
+        String localName = step.getLocalName().intern();
+
+        Transition transition;
+        if (step.isDescendant()) {
+            if (descendants == null) {
+                descendants = new LinkedHashMap<>();
+            }
+            transition = descendants.computeIfAbsent(localName, name -> new Transition());
+        } else {
+            transition = transition(localName);
+            if (transition == null) {
+                transition = new Transition();
+                addTransition(localName, transition);
+            }
+        }
+
+        if (step.hasPosition() && transition.counter < 0) {
+            transition.counter = counters++;
+        }
+
+        return transition.get(localName, step);
+    }
+
+    /**
+     * Adds the transition on a name not yet known to this state, after all its states have been added.
+     */
+    void addTransition(String localName, Transition transition) {
+
+        int length = names.length;
+        String[] n = new String[length + 1];
+        Transition[] t = new Transition[length + 1];
+        System.arraycopy(names, 0, n, 0, length);
+        System.arraycopy(transitions, 0, t, 0, length);
+        n[length] = localName.intern();
+        t[length] = transition;
+        this.names = n;
+        this.transitions = t;
+
+        if (n.length > LINEAR_LIMIT) {
+            Map<String, Transition> map = new HashMap<>();
+            for (int i = 0; i < n.length; i++) {
+                map.put(n[i], t[i]);
+            }
+            this.index = map;
+        }
+
+        if (transition.counter < 0 && transition.hasPosition()) {
+            transition.counter = counters++;
+        }
+    }
+
+    void setOther(Transition other) {
+        this.other = other;
+    }
+
+    /**
+     * Appends to values kept per invoker, which stay {@code null} as long as all of them are -1.
+     */
+    private static int[] append(int[] current, int length, int value) {
+        if (current == null) {
+            if (value < 0) {
+                return null;
+            }
+            current = new int[length];
+            Arrays.fill(current, -1);
+        }
+        int[] values = Arrays.copyOf(current, length + 1);
+        values[length] = value;
+        return values;
+    }
+
+    private static Invoker[] append(Invoker[] current, Invoker invoker) {
+        Invoker[] invokers = Arrays.copyOf(current, current.length + 1);
+        invokers[current.length] = invoker;
+        return invokers;
+    }
+
+    @Override
+    public String toString() {
+        return "State(" + (step != null ? step : name) + ")";
+    }
+
+    /**
+     * All states reachable on one element name: those with predicates, best ranked first, then the plain one.
+     * <p>
+     * In a plan shared by several handlers, each handler's paths select their state independently. Where more than
+     * one handler has predicates on the name, the transition holds one part per such handler, whose states merely
+     * number the possible choices. Each part probes its own index, and the combination of their choices looks up the
+     * actual state, which is built the first time it is needed.
+     */
+    static final class Transition {
+
+        private static final State[] NO_STATES = new State[0];
+
+        private State plain;
+        private final Map<Step, State> states = new HashMap<>();
+        private int candidates;
+
+        private QName[] indexAttributes = new QName[0];
+        private List<Map<String, State[]>> indexes = new ArrayList<>();
+        private State[] unindexed = NO_STATES;
+
+        private Transition[] parts;
+        private LongFunction<State> combiner;
+        private volatile Combinations combinations = Combinations.EMPTY;
+
+        private int counter = -1;
+
+        State select(Cursor cursor, int[] counters) {
+
+            int position = counter >= 0 && counters != null ? ++counters[counter] : 0;
+
+            if (parts == null) {
+                return select(cursor, position);
+            }
+
+            long index = 0;
+            for (Transition part : parts) {
+                State choice = part.select(cursor, position);
+                index = index * part.getChoices() + (choice == null ? 0 : choice.order + 1);
+            }
+            return combination(index);
+        }
+
+        private State combination(long index) {
+
+            Combinations current = combinations;
+            int i = Arrays.binarySearch(current.indexes, index);
+            if (i >= 0) {
+                return current.states[i];
+            }
+
+            synchronized (this) {
+                current = combinations;
+                i = Arrays.binarySearch(current.indexes, index);
+                if (i >= 0) {
+                    return current.states[i];
+                }
+                State state = combiner.apply(index);
+                combinations = current.with(-i - 1, index, state);
+                return state;
+            }
+        }
+
+        private State select(Cursor cursor, int position) {
+
+            State best = null;
+            for (int i = 0; i < indexAttributes.length; i++) {
+                String value = cursor.getAttributeValue(indexAttributes[i]);
+                if (value != null) {
+                    State[] candidates = indexes.get(i).get(value);
+                    if (candidates != null) {
+                        best = first(candidates, cursor, position, best);
+                    }
+                }
+            }
+            best = first(unindexed, cursor, position, best);
+
+            return best != null ? best : plain;
+        }
+
+        private static State first(State[] candidates, Cursor cursor, int position, State best) {
+            for (State state : candidates) {
+                if (best != null && !state.ranksBefore(best)) {
+                    break;
+                }
+                if (state.step.accepts(cursor, position)) {
+                    return state;
+                }
+            }
+            return best;
+        }
+
+        State getPlain() {
+            return plain;
+        }
+
+        void setPlain(State plain) {
+            this.plain = plain;
+        }
+
+        /**
+         * The states with predicates, in no particular order.
+         */
+        Collection<State> getCandidates() {
+            return states.values();
+        }
+
+        /**
+         * The number of outcomes of selecting a part: none, the plain state, or one of the states with predicates. As
+         * a part, the plain state is numbered 0 and the others from 1 on.
+         */
+        int getChoices() {
+            return candidates + 2;
+        }
+
+        /**
+         * Turns this transition into one combining the independent selections of the parts. The combiner builds the
+         * state for choices {@code c0, c1, ...}, numbered {@code (c0 * choices1 + c1) * choices2 + ...}; it is asked
+         * once per combination, and may return {@code null} for one that matches nothing.
+         */
+        void combine(Transition[] parts, LongFunction<State> combiner) {
+            this.parts = parts;
+            this.combiner = combiner;
+        }
+
+        private boolean hasPosition() {
+            if (parts != null) {
+                for (Transition part : parts) {
+                    if (part.hasPosition()) {
+                        return true;
+                    }
+                }
+            }
+            for (State state : unindexed) {
+                if (state.step.hasPosition()) {
+                    return true;
+                }
+            }
+            for (Map<String, State[]> index : indexes) {
+                for (State[] states : index.values()) {
+                    for (State state : states) {
+                        if (state.step.hasPosition()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        State get(String name, Step step) {
+
+            if (step.getConditionCount() == 0) {
+                if (plain == null) {
+                    plain = new State(name, step, 0);
+                }
+                return plain;
+            }
+
+            State state = states.get(step);
+            if (state != null) {
+                return state;
+            }
+
+            state = new State(name, step, states.size());
+            states.put(step, state);
+            add(state);
+
+            return state;
+        }
+
+        /**
+         * Adds a state with predicates, indexed by the value its step tests first, if any.
+         */
+        void add(State state) {
+
+            candidates++;
+
+            QName attribute = state.step.getIndexAttribute();
+            if (attribute == null) {
+                unindexed = insert(unindexed, state);
+                return;
+            }
+
+            int i = Arrays.asList(indexAttributes).indexOf(attribute);
+            if (i < 0) {
+                i = indexAttributes.length;
+                indexAttributes = Arrays.copyOf(indexAttributes, i + 1);
+                indexAttributes[i] = attribute;
+                indexes.add(new HashMap<>());
+            }
+            indexes.get(i).merge(state.step.getIndexValue(), new State[]{state}, (current, added) -> insert(current, added[0]));
+        }
+
+        /**
+         * The combined states built so far, sorted by their number. Replaced as a whole when one is added, so that
+         * selecting never locks.
+         */
+        private static final class Combinations {
+
+            static final Combinations EMPTY = new Combinations(new long[0], NO_STATES);
+
+            final long[] indexes;
+            final State[] states;
+
+            private Combinations(long[] indexes, State[] states) {
+                this.indexes = indexes;
+                this.states = states;
+            }
+
+            Combinations with(int at, long index, State state) {
+
+                long[] i = new long[indexes.length + 1];
+                State[] s = new State[states.length + 1];
+                System.arraycopy(indexes, 0, i, 0, at);
+                System.arraycopy(states, 0, s, 0, at);
+                i[at] = index;
+                s[at] = state;
+                System.arraycopy(indexes, at, i, at + 1, indexes.length - at);
+                System.arraycopy(states, at, s, at + 1, states.length - at);
+
+                return new Combinations(i, s);
+            }
+        }
+
+        private static State[] insert(State[] states, State state) {
+            int i = 0;
+            while (i < states.length && states[i].ranksBefore(state)) {
+                i++;
+            }
+            State[] result = new State[states.length + 1];
+            System.arraycopy(states, 0, result, 0, i);
+            result[i] = state;
+            System.arraycopy(states, i, result, i + 1, states.length - i);
+            return result;
+        }
+    }
+}
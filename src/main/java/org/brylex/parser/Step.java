@@ -0,0 +1,390 @@
+package org.brylex.parser;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One step of a {@link org.brylex.parser.annotation.Path}: an element name followed by any number of predicates, each
+ * in its own brackets or joined with {@code and}.
+ * <ul>
+ * <li>{@code item[@id='42']} - the attribute has the value</li>
+ * <li>{@code item[@id]} - the attribute is present</li>
+ * <li>{@code item[2]} - the second {@code item} among its siblings</li>
+ * </ul>
+ * Names without a namespace match only names without one; names in a namespace are written {@code {uri}local}, both
+ * for elements and attributes, and {@code xml:} stands for the XML namespace. An element name without braces matches
+ * the local name in any namespace. Positions count all siblings of the same local name.
+ * <p>
+ * A step named {@code *} matches an element of any name, and a step written after {@code //} instead of {@code /}
+ * matches at any depth below the previous one, as in {@code //item} or {@code /feed/*&#47;price}. Position predicates
+ * are not supported on {@code *}.
+ */
+final class Step {
+
+    private static final Predicate[] NO_PREDICATES = new Predicate[0];
+
+    static final String WILDCARD = "*";
+    static final String DESCENDANT = "//";
+
+    private final String localName;
+    private final String namespaceURI;
+    private final Predicate[] predicates;
+    private final boolean descendant;
+
+    private Step(String localName, String namespaceURI, Predicate[] predicates, boolean descendant) {
+        this.localName = localName;
+        this.namespaceURI = namespaceURI;
+        this.predicates = predicates;
+        this.descendant = descendant;
+    }
+
+    /**
+     * Splits a path into its steps, on slashes outside braces, brackets and quotes. A step following {@code //} keeps
+     * that prefix.
+     */
+    static LinkedList<String> split(String path) {
+
+        LinkedList<String> steps = new LinkedList<>();
+
+        int start = 0;
+        int nesting = 0;
+        char quote = 0;
+        boolean descendant = false;
+
+        for (int i = 0; i <= path.length(); i++) {
+
+            char c = i < path.length() ? path.charAt(i) : '/';
+
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[' || c == '{') {
+                nesting++;
+            } else if (c == ']' || c == '}') {
+                nesting--;
+            } else if (c == '/' && nesting == 0) {
+                if (i > start) {
+                    steps.add(descendant ? DESCENDANT + path.substring(start, i) : path.substring(start, i));
+                    descendant = false;
+                } else if (i > 0 && i < path.length()) {
+                    descendant = true;
+                }
+                start = i + 1;
+            }
+        }
+
+        if (quote != 0 || nesting != 0) {
+            throw new IllegalArgumentException("Unbalanced quotes or brackets in path [" + path + "].");
+        }
+        if (descendant) {
+            throw new IllegalArgumentException("Missing step after '//' in path [" + path + "].");
+        }
+
+        return steps;
+    }
+
+    static Step parse(String step) {
+
+        boolean descendant = step.startsWith(DESCENDANT);
+        String expression = descendant ? step.substring(DESCENDANT.length()) : step;
+
+        Step parsed = parse(expression, step, descendant);
+        if (parsed.isWildcard() && parsed.hasPosition()) {
+            throw new IllegalArgumentException("Position predicates are not supported on '*' in step [" + step + "].");
+        }
+        return parsed;
+    }
+
+    private static Step parse(String expression, String step, boolean descendant) {
+
+        int bracket = indexOfName(expression, step);
+
+        QName name = name(expression.substring(0, bracket), step);
+        String namespaceURI = expression.charAt(0) == '{' ? name.getNamespaceURI() : null;
+
+        List<Predicate> predicates = new ArrayList<>();
+        for (int i = bracket; i < expression.length(); ) {
+
+            if (expression.charAt(i) != '[') {
+                throw new IllegalArgumentException("Expected '[' at index " + i + " of step [" + step + "].");
+            }
+
+            int end = closingBracket(expression, i, step);
+            for (String predicate : splitAnd(expression.substring(i + 1, end))) {
+                predicates.add(Predicate.parse(predicate.trim(), step));
+            }
+            i = end + 1;
+        }
+
+        return new Step(name.getLocalPart(), namespaceURI, predicates.toArray(NO_PREDICATES), descendant);
+    }
+
+    private static int indexOfName(String expression, String step) {
+        if (expression.isEmpty()) {
+            throw new IllegalArgumentException("Missing name in step [" + step + "].");
+        }
+        int i = expression.startsWith("{") ? expression.indexOf('}') : 0;
+        if (i < 0) {
+            throw new IllegalArgumentException("Unclosed namespace in step [" + step + "].");
+        }
+        int bracket = expression.indexOf('[', i);
+        return bracket < 0 ? expression.length() : bracket;
+    }
+
+    private static int closingBracket(String expression, int open, String step) {
+        char quote = 0;
+        for (int i = open + 1; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ']') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unclosed predicate in step [" + step + "].");
+    }
+
+    private static List<String> splitAnd(String expression) {
+
+        List<String> parts = new ArrayList<>();
+
+        int start = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (expression.startsWith(" and ", i)) {
+                parts.add(expression.substring(start, i));
+                start = i + 5;
+            }
+        }
+        parts.add(expression.substring(start));
+
+        return parts;
+    }
+
+    private static QName name(String name, String step) {
+
+        name = name.trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Missing name in step [" + step + "].");
+        }
+
+        if (name.startsWith("{")) {
+            int end = name.indexOf('}');
+            return new QName(name.substring(1, end), name.substring(end + 1));
+        }
+        if (name.startsWith(XMLConstants.XML_NS_PREFIX + ":")) {
+            return new QName(XMLConstants.XML_NS_URI, name.substring(4));
+        }
+
+        return new QName(name);
+    }
+
+    String getLocalName() {
+        return localName;
+    }
+
+    boolean isWildcard() {
+        return WILDCARD.equals(localName);
+    }
+
+    /**
+     * Whether this step matches at any depth below the previous one rather than only among its children.
+     */
+    boolean isDescendant() {
+        return descendant;
+    }
+
+    /**
+     * The number of conditions an element must meet beyond its local name; the step with more wins.
+     */
+    int getConditionCount() {
+        return predicates.length + (namespaceURI != null ? 1 : 0);
+    }
+
+    boolean hasPosition() {
+        for (Predicate predicate : predicates) {
+            if (predicate.position > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The attribute of the first value predicate, by which candidate steps are indexed, or {@code null}.
+     */
+    QName getIndexAttribute() {
+        for (Predicate predicate : predicates) {
+            if (predicate.value != null) {
+                return predicate.attribute;
+            }
+        }
+        return null;
+    }
+
+    String getIndexValue() {
+        for (Predicate predicate : predicates) {
+            if (predicate.value != null) {
+                return predicate.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the current start element, already known to have this step's local name, meets all conditions.
+     *
+     * @param position the element's position among its siblings of the same name, or 0 if not counted
+     */
+    boolean accepts(Cursor cursor, int position) {
+
+        if (namespaceURI != null && !namespaceURI.equals(nonNull(cursor.getNamespaceURI()))) {
+            return false;
+        }
+
+        for (Predicate predicate : predicates) {
+            if (!predicate.test(cursor, position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Step)) return false;
+
+        Step step = (Step) o;
+        return descendant == step.descendant &&
+                localName.equals(step.localName) &&
+                Objects.equals(namespaceURI, step.namespaceURI) &&
+                Arrays.equals(predicates, step.predicates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(localName, namespaceURI, Arrays.hashCode(predicates), descendant);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(descendant ? DESCENDANT : "");
+        if (namespaceURI != null) {
+            builder.append('{').append(namespaceURI).append('}');
+        }
+        builder.append(localName);
+        for (Predicate predicate : predicates) {
+            builder.append('[').append(predicate).append(']');
+        }
+        return builder.toString();
+    }
+
+    private static final class Predicate {
+
+        private final QName attribute;
+        private final String value;
+        private final int position;
+
+        private Predicate(QName attribute, String value, int position) {
+            this.attribute = attribute;
+            this.value = value;
+            this.position = position;
+        }
+
+        static Predicate parse(String expression, String step) {
+
+            if (!expression.isEmpty() && Character.isDigit(expression.charAt(0))) {
+                try {
+                    int position = Integer.parseInt(expression);
+                    if (position > 0) {
+                        return new Predicate(null, null, position);
+                    }
+                } catch (NumberFormatException e) {
+                    // reported below
+                }
+                throw new IllegalArgumentException("Invalid position [" + expression + "] in step [" + step + "].");
+            }
+
+            if (!expression.startsWith("@")) {
+                throw new IllegalArgumentException("Unsupported predicate [" + expression + "] in step [" + step + "].");
+            }
+
+            int equals = expression.indexOf('=', expression.indexOf('}') + 1);
+            if (equals < 0) {
+                return new Predicate(attribute(expression.substring(1), step), null, 0);
+            }
+
+            String value = expression.substring(equals + 1).trim();
+            if (value.length() < 2 || (value.charAt(0) != '\'' && value.charAt(0) != '"') || value.charAt(value.length() - 1) != value.charAt(0)) {
+                throw new IllegalArgumentException("Expected a quoted value in predicate [" + expression + "] of step [" + step + "].");
+            }
+
+            return new Predicate(attribute(expression.substring(1, equals), step), value.substring(1, value.length() - 1), 0);
+        }
+
+        private static QName attribute(String name, String step) {
+            QName attribute = name(name, step);
+            if (attribute.getNamespaceURI().isEmpty() && attribute.getLocalPart().indexOf(':') >= 0) {
+                throw new IllegalArgumentException("Prefixed attribute [" + name.trim() + "] in step [" + step + "]; write namespaced names as {uri}local.");
+            }
+            return attribute;
+        }
+
+        boolean test(Cursor cursor, int position) {
+            if (this.position > 0) {
+                return this.position == position;
+            }
+            String actual = cursor.getAttributeValue(attribute);
+            return value != null ? value.equals(actual) : actual != null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Predicate)) return false;
+
+            Predicate that = (Predicate) o;
+            return position == that.position &&
+                    Objects.equals(attribute, that.attribute) &&
+                    Objects.equals(value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(attribute, value, position);
+        }
+
+        @Override
+        public String toString() {
+            if (position > 0) {
+                return String.valueOf(position);
+            }
+            String name = attribute.getNamespaceURI().isEmpty() ? attribute.getLocalPart() : "{" + attribute.getNamespaceURI() + "}" + attribute.getLocalPart();
+            return "@" + name + (value != null ? "='" + value + "'" : "");
+        }
+    }
+}
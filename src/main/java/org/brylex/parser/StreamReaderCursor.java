@@ -0,0 +1,198 @@
+package org.brylex.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link Cursor} over an {@link XMLStreamReader}. Event objects are built on demand from the reader's current state.
+ */
+class StreamReaderCursor implements Cursor {
+
+    private final XMLStreamReader reader;
+
+    private XMLEventFactory eventFactory;
+    private StartElement startElement;
+    private EndElement endElement;
+
+    StreamReaderCursor(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return reader.hasNext();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        reader.close();
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        startElement = null;
+        endElement = null;
+        return reader.next();
+    }
+
+    @Override
+    public void skipElement() throws XMLStreamException {
+
+        startElement = null;
+        endElement = null;
+
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public int getEventType() {
+        return reader.getEventType();
+    }
+
+    @Override
+    public String getLocalName() {
+        return reader.getLocalName();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return reader.getNamespaceURI();
+    }
+
+    @Override
+    public String getPrefix() {
+        return reader.getPrefix();
+    }
+
+    @Override
+    public String getAttributeValue(QName name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equals(name.getLocalPart()) && name.getNamespaceURI().equals(nonNull(reader.getAttributeNamespace(i)))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getAttributeCount() {
+        return reader.getAttributeCount();
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+        return reader.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+        return reader.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+        return reader.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+        return reader.getAttributeValue(index);
+    }
+
+    @Override
+    public char[] getTextCharacters() {
+        return reader.getTextCharacters();
+    }
+
+    @Override
+    public int getTextStart() {
+        return reader.getTextStart();
+    }
+
+    @Override
+    public int getTextLength() {
+        return reader.getTextLength();
+    }
+
+    @Override
+    public StartElement asStartElement() {
+
+        if (startElement != null) {
+            return startElement;
+        }
+
+        XMLEventFactory factory = eventFactory();
+
+        List<Attribute> attributes = new ArrayList<>(reader.getAttributeCount());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            attributes.add(factory.createAttribute(reader.getAttributeName(i), reader.getAttributeValue(i)));
+        }
+
+        startElement = factory.createStartElement(prefix(), namespaceURI(), reader.getLocalName(), attributes.iterator(), namespaces().iterator(), reader.getNamespaceContext());
+        return startElement;
+    }
+
+    @Override
+    public EndElement asEndElement() {
+        if (endElement == null) {
+            endElement = eventFactory().createEndElement(prefix(), namespaceURI(), reader.getLocalName(), namespaces().iterator());
+        }
+        return endElement;
+    }
+
+    private List<Namespace> namespaces() {
+
+        XMLEventFactory factory = eventFactory();
+
+        List<Namespace> namespaces = new ArrayList<>(reader.getNamespaceCount());
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            if (prefix == null || prefix.isEmpty()) {
+                namespaces.add(factory.createNamespace(reader.getNamespaceURI(i)));
+            } else {
+                namespaces.add(factory.createNamespace(prefix, reader.getNamespaceURI(i)));
+            }
+        }
+        return namespaces;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    private String prefix() {
+        String prefix = reader.getPrefix();
+        return prefix != null ? prefix : "";
+    }
+
+    private String namespaceURI() {
+        String namespaceURI = reader.getNamespaceURI();
+        return namespaceURI != null ? namespaceURI : "";
+    }
+
+    private XMLEventFactory eventFactory() {
+        if (eventFactory == null) {
+            eventFactory = XMLEventFactory.newFactory();
+        }
+        return eventFactory;
+    }
+}
@@ -0,0 +1,91 @@
+package org.brylex.parser;
+
+/**
+ * Binds an element to a method taking a sub-handler. A new sub-handler is created when the element starts, the
+ * element content is matched against the sub-handler's own plan, and the filled instance is passed to the method when
+ * the element ends. A reused sub-handler is created once per parse and reset for every further element instead.
+ */
+public class SubHandlerInvoker implements Invoker {
+
+    private final Invoker invoker;
+    private final Class<?> type;
+    private final boolean reused;
+
+    private volatile BindingPlan plan;
+
+    public SubHandlerInvoker(Invoker invoker, Class<?> type) {
+        this(invoker, type, false);
+    }
+
+    /**
+     * @param reused whether one instance per parse is reset and refilled for every element, instead of a new one
+     */
+    public SubHandlerInvoker(Invoker invoker, Class<?> type, boolean reused) {
+        this.invoker = invoker;
+        this.type = type;
+        this.reused = reused;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    boolean isReused() {
+        return reused;
+    }
+
+    Object newInstance(InstanceFactory instanceFactory) {
+        return instanceFactory.newInstance(type);
+    }
+
+    /**
+     * Prepares a reused instance for the next element, by resetting the fields its plan binds.
+     */
+    void reset(Object instance) {
+        plan().reset(instance);
+    }
+
+    /**
+     * The root state of the sub-handler's plan.
+     */
+    State getScope() {
+        return plan().getRoot();
+    }
+
+    /**
+     * Resolved on first use, so handler types may nest themselves; racing threads resolve the same cached plan.
+     */
+    private BindingPlan plan() {
+        BindingPlan plan = this.plan;
+        if (plan == null) {
+            plan = BindingPlan.of(type);
+            this.plan = plan;
+        }
+        return plan;
+    }
+
+    @Override
+    public void invoke(Object handler, Object argument) {
+        invoker.invoke(handler, argument);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SubHandlerInvoker)) return false;
+
+        SubHandlerInvoker that = (SubHandlerInvoker) o;
+
+        return invoker.equals(that.invoker);
+    }
+
+    @Override
+    public int hashCode() {
+        return invoker.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return invoker.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.brylex.parser;
+
+/**
+ * Bounded cache of canonical strings for text that repeats, such as codes and statuses, looked up straight from the
+ * characters without building a string first. The table is direct-mapped: a new value replaces whichever one shared
+ * its slot, so it never grows and needs no locking. Threads race on slots harmlessly, as strings are immutable and any
+ * value read from a slot is a complete one; a lost race only costs a duplicate.
+ */
+final class Symbols {
+
+    static final int SIZE = 1024;
+
+    /** Longer text is unlikely to repeat and is not kept. */
+    static final int MAX_LENGTH = 64;
+
+    private final String[] entries = new String[SIZE];
+
+    String get(char[] buffer, int start, int length) {
+
+        if (length > MAX_LENGTH) {
+            return new String(buffer, start, length);
+        }
+
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int index = (hash ^ hash >>> 16) & (SIZE - 1);
+
+        String entry = entries[index];
+        if (entry != null && matches(entry, buffer, start, length)) {
+            return entry;
+        }
+
+        entry = new String(buffer, start, length);
+        entries[index] = entry;
+        return entry;
+    }
+
+    private static boolean matches(String entry, char[] buffer, int start, int length) {
+        if (entry.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
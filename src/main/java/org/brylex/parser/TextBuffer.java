@@ -0,0 +1,52 @@
+package org.brylex.parser;
+
+import java.util.Arrays;
+
+/**
+ * Growable character buffer holding the text of one element. Reused across elements, so values read from it must be
+ * copied out before the element ends.
+ */
+final class TextBuffer implements CharSequence {
+
+    private char[] chars = new char[64];
+    private int length;
+
+    void clear() {
+        length = 0;
+    }
+
+    void append(char[] source, int start, int count) {
+        if (length + count > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + count, chars.length * 2));
+        }
+        System.arraycopy(source, start, chars, length, count);
+        length += count;
+    }
+
+    char[] array() {
+        return chars;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException("Index [" + index + "] out of bounds for length [" + length + "].");
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+}
@@ -0,0 +1,212 @@
+package org.brylex.parser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+/**
+ * Binds the text of an element to a field or single-argument method. The conversion is chosen once, when the plan is
+ * compiled: primitives are parsed straight from the text buffer and passed without boxing, other types go through a
+ * {@link Converter}. Only {@code String}-compatible targets see the text as is; for all other types surrounding
+ * whitespace is stripped and empty text leaves the target untouched.
+ * <p>
+ * Methods taking a {@code CharSequence}, or a {@code (char[], int, int)} range, are passed the text buffer itself
+ * without copying it into a {@code String}; it is only valid for the duration of the call. Interned {@code String}
+ * targets are given canonical instances from a {@link Symbols} table of their own.
+ */
+abstract class TextInvoker implements Invoker {
+
+    private static final int STRING = 0;
+    private static final int OBJECT = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int FLOAT = 5;
+    private static final int SHORT = 6;
+    private static final int BYTE = 7;
+    private static final int BOOLEAN = 8;
+    private static final int CHAR = 9;
+    private static final int VIEW = 10;
+    private static final int RANGE = 11;
+    private static final int INTERNED = 12;
+
+    private final Object member;
+    private final int kind;
+    private final MethodHandle target;
+    private final Converter<?> converter;
+    private final Symbols symbols;
+    private final Object initial;
+    private final String name;
+
+    TextInvoker(Member member, Class<?> type, MethodHandle target, Converter<?> converter, boolean intern) {
+        this(member.getDeclaringClass().getName() + "." + member.getName() + (member instanceof Method ? "()" : ""), member, type, target, converter, member instanceof Method, intern);
+    }
+
+    /**
+     * @param member what the text is bound to, as named in error messages
+     * @param scoped whether the target only uses the text during the call, so that it may be given the buffer itself
+     * @param intern whether the target is given canonical instances of repeating text
+     */
+    TextInvoker(String name, Object member, Class<?> type, MethodHandle target, Converter<?> converter, boolean scoped, boolean intern) {
+
+        this.member = member;
+        this.name = name;
+        this.initial = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+
+        if (intern && (converter != null || target.type().parameterCount() == 4 || !type.isAssignableFrom(String.class))) {
+            throw new IllegalArgumentException("Only text bound as a String can be interned: [" + member + "].");
+        }
+        this.symbols = intern ? new Symbols() : null;
+
+        if (target.type().parameterCount() == 4) {
+            if (converter != null) {
+                throw new IllegalArgumentException("Converters do not apply to [" + member + "], which takes the text as a range of characters.");
+            }
+            this.kind = RANGE;
+            this.converter = null;
+            this.target = target.asType(MethodType.methodType(void.class, Object.class, char[].class, int.class, int.class));
+            return;
+        }
+
+        if (intern) {
+            this.kind = INTERNED;
+            this.converter = null;
+        } else if (converter != null) {
+            this.kind = OBJECT;
+            this.converter = converter;
+        } else if (scoped && type == CharSequence.class) {
+            this.kind = VIEW;
+            this.converter = null;
+        } else if (type.isAssignableFrom(String.class)) {
+            this.kind = STRING;
+            this.converter = null;
+        } else if (type.isPrimitive()) {
+            this.kind = primitiveKind(type);
+            this.converter = null;
+        } else {
+            this.kind = OBJECT;
+            this.converter = Converters.forType(type);
+            if (this.converter == null) {
+                throw new IllegalArgumentException("No converter for type [" + type.getName() + "] of [" + member + "].");
+            }
+        }
+
+        Class<?> argumentType = type.isPrimitive() && converter == null ? type : Object.class;
+        this.target = target.asType(MethodType.methodType(void.class, Object.class, argumentType));
+    }
+
+    /**
+     * Whether element text can be bound to the given type without an explicit converter.
+     */
+    static boolean isConvertible(Class<?> type) {
+        return type.isAssignableFrom(String.class) || (type.isPrimitive() && type != void.class) || Converters.forType(type) != null;
+    }
+
+    @Override
+    public void invoke(Object handler, Object argument) {
+
+        if (argument == null) {
+            throw new IllegalArgumentException("Cannot set value of [" + member + "] to [null].");
+        }
+
+        TextBuffer text = (TextBuffer) argument;
+
+        try {
+
+            if (kind == STRING) {
+                target.invokeExact(handler, (Object) text.toString());
+                return;
+            }
+            if (kind == INTERNED) {
+                target.invokeExact(handler, (Object) symbols.get(text.array(), 0, text.length()));
+                return;
+            }
+            if (kind == VIEW) {
+                target.invokeExact(handler, (Object) text);
+                return;
+            }
+            if (kind == RANGE) {
+                target.invokeExact(handler, text.array(), 0, text.length());
+                return;
+            }
+
+            char[] buffer = text.array();
+            int start = 0;
+            int end = text.length();
+            while (start < end && isWhitespace(buffer[start])) {
+                start++;
+            }
+            while (end > start && isWhitespace(buffer[end - 1])) {
+                end--;
+            }
+
+            int length = end - start;
+            if (length == 0) {
+                return;
+            }
+
+            switch (kind) {
+                case INT:
+                    target.invokeExact(handler, Converters.parseInt(buffer, start, length));
+                    break;
+                case LONG:
+                    target.invokeExact(handler, Converters.parseLong(buffer, start, length));
+                    break;
+                case DOUBLE:
+                    target.invokeExact(handler, Converters.parseDouble(buffer, start, length));
+                    break;
+                case FLOAT:
+                    target.invokeExact(handler, (float) Converters.parseDouble(buffer, start, length));
+                    break;
+                case SHORT:
+                    target.invokeExact(handler, Converters.parseShort(buffer, start, length));
+                    break;
+                case BYTE:
+                    target.invokeExact(handler, Converters.parseByte(buffer, start, length));
+                    break;
+                case BOOLEAN:
+                    target.invokeExact(handler, Converters.parseBoolean(buffer, start, length));
+                    break;
+                case CHAR:
+                    target.invokeExact(handler, Converters.parseChar(buffer, start, length));
+                    break;
+                default:
+                    target.invokeExact(handler, (Object) converter.convert(buffer, start, length));
+            }
+
+        } catch (Throwable e) {
+            throw new RuntimeException("Unable to apply value [" + text + "] to [" + member + "] of handler [" + handler + "].", e);
+        }
+    }
+
+    /**
+     * Returns a handle setting the target back to the default value of its type, taking only the handler.
+     */
+    MethodHandle reset() {
+        return MethodHandles.insertArguments(target, 1, initial).asType(MethodType.methodType(void.class, Object.class));
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static int primitiveKind(Class<?> type) {
+        if (type == int.class) return INT;
+        if (type == long.class) return LONG;
+        if (type == double.class) return DOUBLE;
+        if (type == float.class) return FLOAT;
+        if (type == short.class) return SHORT;
+        if (type == byte.class) return BYTE;
+        if (type == boolean.class) return BOOLEAN;
+        if (type == char.class) return CHAR;
+        throw new IllegalArgumentException("Unsupported type [" + type + "].");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,9 +1,45 @@
 package org.brylex.parser.annotation;
 
+import org.brylex.parser.Converter;
+
 @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
 @java.lang.annotation.Target({java.lang.annotation.ElementType.FIELD, java.lang.annotation.ElementType.METHOD})
 public @interface Path {
 
+    /**
+     * The path of the bound element. A method taking a {@code CharSequence}, or a {@code (char[], int, int)} range, is
+     * given the element text straight from the parser's buffer, which it must not keep beyond the call.
+     */
     String value();
 
+    /**
+     * Converter turning the element text into the field or parameter type. Defaults to the built-in conversion for
+     * {@code String}, primitives and their wrappers, {@code BigDecimal}, {@code BigInteger}, {@code java.time} types
+     * and enums.
+     */
+    @SuppressWarnings("rawtypes")
+    Class<? extends Converter> converter() default Converter.class;
+
+    /**
+     * Whether the binding fires only for the first matching element of each handler instance. When every binding of
+     * the handler being parsed fires only once, parsing stops as soon as all of them have fired, without reading the
+     * rest of the input.
+     */
+    boolean once() default false;
+
+    /**
+     * Whether repeating text, such as codes and statuses, is bound as one shared {@code String} instance instead of a
+     * new one per element. Only for {@code String} targets; each binding keeps a small bounded cache of recent values,
+     * so this pays off for text with few distinct values.
+     */
+    boolean intern() default false;
+
+    /**
+     * Whether a method taking a sub-handler is passed the same instance for every element it binds during a parse,
+     * instead of a new one each time. Before each element, the fields the sub-handler binds with {@code Path} are set
+     * back to their defaults; any other state is the sub-handler's own to clear. The instance is only valid until the
+     * method returns, so the method must copy out what it keeps.
+     */
+    boolean reuse() default false;
+
 }
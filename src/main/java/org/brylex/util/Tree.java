@@ -1,6 +1,5 @@
 package org.brylex.util;
 
-import javax.xml.stream.events.EndElement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -13,37 +12,37 @@ public class Tree<T> {
 
     private Tree<T> parent = null;
 
-    private HashMap<T, Tree<T>> locate = new HashMap<T, Tree<T>>();
+    private HashMap<T, Tree<T>> children = new HashMap<T, Tree<T>>();
 
     public Tree(T head) {
         this.head = head;
-        locate.put(head, this);
     }
 
     public void addLeaf(T root, T leaf) {
-        if (locate.containsKey(root)) {
-            locate.get(root).addLeaf(leaf);
+        Tree<T> t = getTree(root);
+        if (t != null) {
+            t.addLeaf(leaf);
         } else {
             addLeaf(root).addLeaf(leaf);
         }
     }
 
     public Tree<T> addLeaf(T leaf) {
-        Tree<T> t = new Tree<T>(leaf);
-        leafs.add(t);
-        t.parent = this;
-        t.locate = this.locate;
-        locate.put(leaf, t);
+        Tree<T> t = children.get(leaf);
+        if (t == null) {
+            t = new Tree<T>(leaf);
+            t.parent = this;
+            leafs.add(t);
+            children.put(leaf, t);
+        }
         return t;
     }
 
     public Tree<T> setAsParent(T parentRoot) {
         Tree<T> t = new Tree<T>(parentRoot);
         t.leafs.add(this);
+        t.children.put(head, this);
         this.parent = t;
-        t.locate = this.locate;
-        t.locate.put(head, this);
-        t.locate.put(parentRoot, t);
         return t;
     }
 
@@ -51,16 +50,27 @@ public class Tree<T> {
         return head;
     }
 
+    /**
+     * Returns the direct child holding the given element, or {@code null}. Lookups are answered by this level only,
+     * so equal elements at different depths live in separate subtrees.
+     */
     public Tree<T> getTree(T element) {
-        return locate.get(element);
+        return children.get(element);
     }
 
-    public Tree<T> getTree(EndElement endElement) {
-
-        locate.forEach((a, b) -> {
-            System.out.println(b);
-        });
-
+    /**
+     * Returns the first subtree, searched depth first from this tree, whose head equals the given element.
+     */
+    public Tree<T> find(T element) {
+        if (head.equals(element)) {
+            return this;
+        }
+        for (Tree<T> leaf : leafs) {
+            Tree<T> t = leaf.find(element);
+            if (t != null) {
+                return t;
+            }
+        }
         return null;
     }
 
@@ -70,7 +80,7 @@ public class Tree<T> {
 
     public Collection<T> getSuccessors(T root) {
         Collection<T> successors = new ArrayList<T>();
-        Tree<T> tree = getTree(root);
+        Tree<T> tree = find(root);
         if (null != tree) {
             for (Tree<T> leaf : tree.leafs) {
                 successors.add(leaf.head);
@@ -85,7 +95,7 @@ public class Tree<T> {
 
     public static <T> Collection<T> getSuccessors(T of, Collection<Tree<T>> in) {
         for (Tree<T> tree : in) {
-            if (tree.locate.containsKey(of)) {
+            if (tree.find(of) != null) {
                 return tree.getSuccessors(of);
             }
         }
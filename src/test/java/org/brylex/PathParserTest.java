@@ -1,20 +1,46 @@
 package org.brylex;
 
 
+import org.brylex.parser.BatchParser;
+import org.brylex.parser.Binder;
+import org.brylex.parser.BindingPlan;
+import org.brylex.parser.Converter;
+import org.brylex.parser.InstanceFactory;
+import org.brylex.parser.ParseMetrics;
 import org.brylex.parser.PathParser;
+import org.brylex.parser.PushParser;
 import org.brylex.parser.annotation.Path;
 import org.junit.Test;
 
+import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
 import java.io.Reader;
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 public class PathParserTest {
 
@@ -64,6 +90,28 @@ public class PathParserTest {
         assertThat(handler.child).isEqualTo("D");
     }
 
+    @Test
+    public void testSameElementNamesBoundAtDifferentLevels() throws Exception {
+
+        String xml = "<xml>" +
+                "<child>A</child>" +
+                "<pet><dog><child>Z</child></dog></pet>" +
+                "<dog><child>Y</child></dog>" +
+                "</xml>";
+
+        TestNestedHandler handler = new TestNestedHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLEventReader xmlEventReader = XMLInputFactory.newInstance().createXMLEventReader(reader);
+
+            new PathParser(handler).parse(xmlEventReader);
+        }
+
+        assertThat(handler.child).isEqualTo("A");
+        assertThat(handler.dogChild).isEqualTo("Z");
+    }
+
     @Test
     public void testSubHandler() throws Exception {
 
@@ -92,6 +140,191 @@ public class PathParserTest {
         assertThat(handler.children.get(3).grandchild).isEqualTo("C");
     }
 
+    @Test
+    public void testNestedSubHandlersWithInstanceFactory() throws Exception {
+
+        String xml = "<tree>" +
+                "<node><name>a</name>" +
+                "<node><name>a1</name><node><name>a11</name></node></node>" +
+                "<node><name>a2</name></node>" +
+                "</node>" +
+                "<node><name>b</name></node>" +
+                "</tree>";
+
+        TestTreeHandler handler = new TestTreeHandler();
+        List<Class<?>> created = new ArrayList<>();
+
+        InstanceFactory instanceFactory = new InstanceFactory() {
+            @Override
+            public <T> T newInstance(Class<T> type) {
+                created.add(type);
+                return type.cast(new TestTreeNode());
+            }
+        };
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler, instanceFactory).parse(xmlStreamReader);
+        }
+
+        assertThat(created).hasSize(5);
+        assertThat(handler.nodes).extracting("name").containsExactly("a", "b");
+        assertThat(handler.nodes.get(0).nodes).extracting("name").containsExactly("a1", "a2");
+        assertThat(handler.nodes.get(0).nodes.get(0).nodes).extracting("name").containsExactly("a11");
+    }
+
+    @Test
+    public void testStreamRecords() throws Exception {
+
+        String xml = "<xml>" +
+                "<child><grandchild>A</grandchild></child>" +
+                "<sister><child><grandchild>X</grandchild></child></sister>" +
+                "<child><grandchild>B</grandchild></child>" +
+                "<child><uncle>C</uncle></child>" +
+                "</xml>";
+
+        XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+
+        Iterator<TestSubHandler> iterator = PathParser.iterator(xmlStreamReader, "/xml/child", TestSubHandler.class);
+
+        assertThat(iterator.next().grandchild).isEqualTo("A");
+        assertThat(xmlStreamReader.getLocalName()).isEqualTo("child");
+
+        assertThat(iterator.next().grandchild).isEqualTo("B");
+        assertThat(iterator.next().uncle).isEqualTo("C");
+        assertThat(iterator.hasNext()).isFalse();
+
+        xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+
+        try (Stream<TestSubHandler> stream = PathParser.stream(xmlStreamReader, "/xml/child", TestSubHandler.class)) {
+            assertThat(stream.map(child -> child.grandchild)).containsExactly("A", "B", null);
+        }
+    }
+
+    @Test
+    public void testParallelRecords() throws Exception {
+
+        StringBuilder xml = new StringBuilder("<xml>");
+        for (int i = 0; i < 1000; i++) {
+            xml.append("<child><grandchild>").append(i).append("</grandchild></child><sister>X</sister>");
+        }
+        xml.append("</xml>");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            List<String> ordered = new ArrayList<>();
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml.toString()));
+            PathParser.forEachParallel(xmlStreamReader, "/xml/child", TestSubHandler.class, child -> ordered.add(child.grandchild), executor, true);
+
+            assertThat(ordered).hasSize(1000);
+            for (int i = 0; i < 1000; i++) {
+                assertThat(ordered.get(i)).isEqualTo(String.valueOf(i));
+            }
+
+            Set<String> unordered = ConcurrentHashMap.newKeySet();
+            xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml.toString()));
+            PathParser.forEachParallel(xmlStreamReader, "/xml/child", TestSubHandler.class, child -> unordered.add(child.grandchild), executor, false);
+
+            assertThat(unordered).hasSize(1000);
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = RuntimeException.class, timeout = 10000)
+    public void testParallelRecordsRejectedByExecutor() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        executor.shutdown();
+
+        String xml = "<xml><child><grandchild>A</grandchild></child><child><grandchild>B</grandchild></child></xml>";
+
+        XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        PathParser.forEachParallel(xmlStreamReader, "/xml/child", TestSubHandler.class, child -> {
+        }, executor, false);
+    }
+
+    @Test
+    public void testSharedParser() throws Exception {
+
+        PathParser parser = new PathParser(TestRootHandler.class);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            List<Future<TestRootHandler>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+
+                String xml = "<xml><child><grandchild>" + i + "</grandchild></child><child><uncle>" + i + "</uncle></child></xml>";
+
+                futures.add(executor.submit(() -> {
+                    TestRootHandler handler = new TestRootHandler();
+                    parser.parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)), handler);
+                    return handler;
+                }));
+            }
+
+            for (int i = 0; i < 100; i++) {
+                TestRootHandler handler = futures.get(i).get();
+                assertThat(handler.children).hasSize(2);
+                assertThat(handler.children.get(0).grandchild).isEqualTo(String.valueOf(i));
+                assertThat(handler.children.get(1).uncle).isEqualTo(String.valueOf(i));
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchParser() throws Exception {
+
+        List<byte[]> documents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            documents.add(("<xml><child><grandchild>" + i + "</grandchild></child></xml>").getBytes(StandardCharsets.UTF_8));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            BatchParser<TestRootHandler> parser = new BatchParser<>(TestRootHandler.class, executor);
+
+            List<TestRootHandler> handlers = parser.parseAll(documents);
+
+            assertThat(handlers).hasSize(100);
+            for (int i = 0; i < 100; i++) {
+                assertThat(handlers.get(i).children).hasSize(1);
+                assertThat(handlers.get(i).children.get(0).grandchild).isEqualTo(String.valueOf(i));
+            }
+
+            assertThat(parser.parse(new StringReader("<xml><child><uncle>X</uncle></child></xml>")).children.get(0).uncle).isEqualTo("X");
+
+            List<java.nio.file.Path> files = new ArrayList<>();
+            try {
+                for (int i = 0; i < 3; i++) {
+                    files.add(Files.write(Files.createTempFile("path-parser", ".xml"), documents.get(i)));
+                }
+                List<TestRootHandler> parsed = parser.parseAll(files, Files::newInputStream);
+                assertThat(parsed.get(2).children.get(0).grandchild).isEqualTo("2");
+                assertThat(parser.submit(files.get(1)).get().children.get(0).grandchild).isEqualTo("1");
+            } finally {
+                for (java.nio.file.Path file : files) {
+                    Files.delete(file);
+                }
+            }
+
+            BatchParser<TestRootHandler> defaults = new BatchParser<>(TestRootHandler.class, XMLInputFactory.newInstance(), null, executor);
+            assertThat(defaults.parse(new StringReader("<xml><child><uncle>Y</uncle></child></xml>")).children.get(0).uncle).isEqualTo("Y");
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void matchAnnotation() throws Exception {
 
@@ -115,6 +348,518 @@ public class PathParserTest {
         assertThat(handler.bread).isEqualTo("Pain");
     }
 
+    @Test
+    public void matchAttributePredicates() throws Exception {
+
+        String xml = "<menu xmlns:n='urn:nutrition'>" +
+                "<food lang='en' id='FRUIT'>Apple</food>" +
+                "<food>Soup</food>" +
+                "<food id='BREAD' lang='fr'>Pain</food>" +
+                "<food id='BREAD' lang='en'>Bread</food>" +
+                "<food spicy='yes'>Chili</food>" +
+                "<food n:kcal='0'>Water</food>" +
+                "<food kcal='0'>Juice</food>" +
+                "</menu>";
+
+        TestPredicateHandler streamHandler = new TestPredicateHandler();
+        new PathParser(streamHandler).parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+        TestPredicateHandler eventHandler = new TestPredicateHandler();
+        new PathParser(eventHandler).parse(XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml)));
+
+        for (TestPredicateHandler handler : new TestPredicateHandler[]{streamHandler, eventHandler}) {
+            assertThat(handler.fruit).isEqualTo("Apple");
+            assertThat(handler.second).isEqualTo("Soup");
+            assertThat(handler.frenchBread).isEqualTo("Pain");
+            assertThat(handler.bread).isEqualTo("Bread");
+            assertThat(handler.spicy).isEqualTo("Chili");
+            assertThat(handler.water).isEqualTo("Water");
+            assertThat(handler.other).isEqualTo("Juice");
+        }
+    }
+
+    @Test
+    public void matchWildcardsAndDescendants() throws Exception {
+
+        String xml = "<feed>" +
+                "<book><price>10</price><item>A</item></book>" +
+                "<music><price currency='EUR'>12</price><tracks><item>B</item><item>C</item></tracks></music>" +
+                "<item>E</item>" +
+                "<extra><deep><price currency='EUR'>3</price></deep></extra>" +
+                "</feed>";
+
+        TestWildcardHandler streamHandler = new TestWildcardHandler();
+        new PathParser(streamHandler).parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+        TestWildcardHandler eventHandler = new TestWildcardHandler();
+        new PathParser(eventHandler).parse(XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml)));
+
+        for (TestWildcardHandler handler : new TestWildcardHandler[]{streamHandler, eventHandler}) {
+            assertThat(handler.sections).containsExactly("book", "music", "item", "extra");
+            assertThat(handler.items).containsExactly("A", "B", "C", "E");
+            assertThat(handler.prices).containsExactly("10", "12");
+            assertThat(handler.euros).containsExactly("12", "3");
+        }
+    }
+
+    @Test
+    public void testMultipleHandlers() throws Exception {
+
+        String xml = "<xml>" +
+                "<child><grandchild>A</grandchild></child>" +
+                "<child><uncle>X</uncle></child>" +
+                "<food id='FRUIT'>Apple</food>" +
+                "</xml>";
+
+        TestEventHandler events = new TestEventHandler();
+        TestCountHandler counts = new TestCountHandler();
+        TestParserHandler foods = new TestParserHandler();
+        PathParser.of(events, counts, foods).parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+        assertThat(events.fruit).isEqualTo("Apple");
+        assertThat(events.events).containsExactly("<xml>", "<food id='FRUIT'>", "</food>", "</xml>");
+        assertThat(events.children).hasSize(2);
+        assertThat(events.children.get(1).uncle).isEqualTo("X");
+        assertThat(counts.children).isEqualTo(2);
+        assertThat(counts.food).isEqualTo("Apple");
+        assertThat(foods.fruit).isEqualTo("Apple");
+
+        List<TestCountHandler> created = new ArrayList<>();
+        Map<Class<?>, Supplier<?>> suppliers = new LinkedHashMap<>();
+        suppliers.put(TestWildcardHandler.class, TestWildcardHandler::new);
+        suppliers.put(TestCountHandler.class, () -> {
+            TestCountHandler handler = new TestCountHandler();
+            created.add(handler);
+            return handler;
+        });
+
+        PathParser parser = PathParser.of(suppliers);
+        parser.parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+        parser.parse(XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml)));
+
+        assertThat(created).hasSize(2);
+        assertThat(created.get(1).children).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMultipleHandlersBelowSubHandler() throws Exception {
+        PathParser.of(new TestRootHandler(), new TestSubHandlerPaths());
+    }
+
+    @Test
+    public void testMultipleHandlersWithManyPredicates() throws Exception {
+
+        StringBuilder xml = new StringBuilder("<feed>");
+        for (int id = 0; id < 150; id++) {
+            xml.append("<item id='").append(id).append("'>").append(id * 2).append("</item>");
+        }
+        xml.append("<item id='none'>0</item></feed>");
+
+        PathParser parser = PathParser.of(new TestIdHandler(), new TestOtherIdHandler());
+
+        for (int round = 0; round < 2; round++) {
+
+            TestIdHandler ids = new TestIdHandler();
+            TestOtherIdHandler otherIds = new TestOtherIdHandler();
+            parser.parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml.toString())), new Object[]{ids, otherIds});
+
+            assertThat(ids.items).hasSize(100).startsWith("0=0").endsWith("99=198");
+            assertThat(otherIds.items).hasSize(100).startsWith("50=100").endsWith("149=298");
+        }
+    }
+
+    @Test
+    public void testStopOnceBound() throws Exception {
+
+        String xml = "<envelope>" +
+                "<header><id>42</id><id>43</id><from>sender</from></header>" +
+                "<body><unclosed></body>";
+
+        TestOnceHandler handler = new TestOnceHandler();
+        new PathParser(handler).parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+
+        assertThat(handler.id).isEqualTo(42);
+        assertThat(handler.from).isEqualTo("sender");
+
+        TestOnceHandler pushed = new TestOnceHandler();
+        PushParser parser = new PathParser(pushed).push();
+        parser.feed(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(parser.isDone()).isTrue();
+        assertThat(pushed.id).isEqualTo(42);
+    }
+
+    @Test
+    public void testStreamReader() throws Exception {
+
+        String xml = "<xml>" +
+                "<child><grandchild>A</grandchild></child>" +
+                "<child><uncle>X</uncle></child>" +
+                "<food id='FRUIT'>Apple</food>" +
+                "</xml>";
+
+        TestEventHandler handler = new TestEventHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(handler.fruit).isEqualTo("Apple");
+        assertThat(handler.events).containsExactly("<xml>", "<food id='FRUIT'>", "</food>", "</xml>");
+        assertThat(handler.children).hasSize(2);
+        assertThat(handler.children.get(0).grandchild).isEqualTo("A");
+        assertThat(handler.children.get(1).uncle).isEqualTo("X");
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<!-- exported -->\n" +
+                "<xml xmlns:x=\"urn:x\">" +
+                "<child><grandchild>A &amp; B</grandchild></child>" +
+                "<sister><child><grandchild>skipped</grandchild></child></sister>" +
+                "<child><x:ignored a='>'/><uncle><![CDATA[<X>]]></uncle></child>" +
+                "<child><grandchild>bl\u00e5b\u00e6r &#x263A;</grandchild></child>" +
+                "</xml>\n" +
+                "<!-- end of export -->\n";
+
+        java.nio.file.Path file = Files.createTempFile("path-parser", ".xml");
+        try {
+
+            Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+
+            TestRootHandler handler = new TestRootHandler();
+            new PathParser(handler).parse(file);
+
+            assertThat(handler.children).hasSize(3);
+            assertThat(handler.children.get(0).grandchild).isEqualTo("A & B");
+            assertThat(handler.children.get(1).uncle).isEqualTo("<X>");
+            assertThat(handler.children.get(2).grandchild).isEqualTo("bl\u00e5b\u00e6r \u263A");
+
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileDuplicateAttribute() throws Exception {
+        parseFile("<xml><child a='1' a='2'><grandchild>A</grandchild></child></xml>");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileNullCharacterReference() throws Exception {
+        parseFile("<xml><child><grandchild>&#0;</grandchild></child></xml>");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileSecondRoot() throws Exception {
+        parseFile("<xml><child/></xml><xml><child/></xml>");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileTrailingText() throws Exception {
+        parseFile("<xml><child/></xml>\ntrailing");
+    }
+
+    @Test
+    public void testMappedFileMalformedUtf8() throws Exception {
+
+        byte[] xml = "<xml><child><grandchild>A?</grandchild></child></xml>".getBytes(StandardCharsets.UTF_8);
+        xml[25] = (byte) 0x80;
+
+        Throwable thrown = catchThrowable(() -> parseFile(xml));
+
+        assertThat(thrown).isInstanceOf(RuntimeException.class).hasCauseInstanceOf(XMLStreamException.class);
+        assertThat(((XMLStreamException) thrown.getCause()).getLocation().getCharacterOffset()).isEqualTo(25);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileOverlongUtf8() throws Exception {
+        byte[] xml = "<xml><child><grandchild>A??</grandchild></child></xml>".getBytes(StandardCharsets.UTF_8);
+        // '/' encoded in two bytes
+        xml[25] = (byte) 0xC0;
+        xml[26] = (byte) 0xAF;
+        parseFile(xml);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileMalformedName() throws Exception {
+        parseFile(new byte[]{'<', 'x', (byte) 0xFF, '/', '>'});
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMappedFileCdataEndInText() throws Exception {
+        parseFile("<xml><child><grandchild>A]]>B</grandchild></child></xml>");
+    }
+
+    @Test
+    public void testMappedFileDocType() throws Exception {
+
+        TestRootHandler handler = new TestRootHandler();
+        parseFile("<!DOCTYPE xml [<!ENTITY e \"]>\"><!-- ']' --><?pi ]>?>]>" +
+                "<xml><child><grandchild>A</grandchild></child></xml>", handler);
+
+        assertThat(handler.children).hasSize(1);
+        assertThat(handler.children.get(0).grandchild).isEqualTo("A");
+    }
+
+    private static void parseFile(String xml) throws Exception {
+        parseFile(xml, new TestRootHandler());
+    }
+
+    private static void parseFile(String xml, Object handler) throws Exception {
+        parseFile(xml.getBytes(StandardCharsets.UTF_8), handler);
+    }
+
+    private static void parseFile(byte[] xml) throws Exception {
+        parseFile(xml, new TestRootHandler());
+    }
+
+    private static void parseFile(byte[] xml, Object handler) throws Exception {
+
+        java.nio.file.Path file = Files.createTempFile("path-parser", ".xml");
+        try {
+            Files.write(file, xml);
+            new PathParser(handler).parse(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPushParser() throws Exception {
+
+        byte[] xml = ("<xml>" +
+                "<child><grandchild>A</grandchild></child>" +
+                "<sister><child><grandchild>skipped</grandchild></child></sister>" +
+                "<child><uncle>bl\u00e5b\u00e6r</uncle></child>" +
+                "</xml>").getBytes(StandardCharsets.UTF_8);
+
+        TestRootHandler handler = new TestRootHandler();
+        PushParser parser = new PathParser(TestRootHandler.class).push(handler);
+
+        int firstChildEnd = new String(xml, StandardCharsets.UTF_8).indexOf("</child>") + "</child>".length();
+
+        for (int offset = 0; offset < xml.length; offset += 3) {
+
+            ByteBuffer chunk = ByteBuffer.wrap(xml, offset, Math.min(3, xml.length - offset));
+            parser.feed(chunk);
+
+            assertThat(chunk.hasRemaining()).isFalse();
+            if (offset + 3 < firstChildEnd) {
+                assertThat(handler.children).isEmpty();
+            } else if (offset < firstChildEnd) {
+                assertThat(handler.children).hasSize(1);
+            }
+        }
+        parser.endOfInput();
+
+        assertThat(parser.isDone()).isTrue();
+        assertThat(handler.children).hasSize(2);
+        assertThat(handler.children.get(0).grandchild).isEqualTo("A");
+        assertThat(handler.children.get(1).uncle).isEqualTo("bl\u00e5b\u00e6r");
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testPushParserIncompleteInput() throws Exception {
+
+        PushParser parser = new PathParser(new TestRootHandler()).push();
+        parser.feed(ByteBuffer.wrap("<xml><child>".getBytes(StandardCharsets.UTF_8)));
+        parser.endOfInput();
+    }
+
+    @Test
+    public void testParseMetrics() throws Exception {
+
+        String xml = "<xml>" +
+                "<child><grandchild>AB</grandchild></child>" +
+                "<sister><child><grandchild>skipped</grandchild></child></sister>" +
+                "<child><uncle>XYZ</uncle></child>" +
+                "</xml>";
+
+        ParseMetrics metrics = new ParseMetrics(true);
+        PathParser parser = new PathParser(TestRootHandler.class, null, metrics);
+
+        for (int i = 0; i < 2; i++) {
+            parser.parse(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)), new TestRootHandler());
+        }
+
+        assertThat(metrics.getMatchedElements()).isEqualTo(2 * 5);
+        assertThat(metrics.getSkippedElements()).isEqualTo(2);
+        assertThat(metrics.getBufferedText()).isEqualTo(2 * 5);
+        assertThat(metrics.getEvents()).isGreaterThan(metrics.getMatchedElements() + metrics.getSkippedElements());
+        assertThat(metrics.getInvocations())
+                .containsEntry("org.brylex.PathParserTest$TestRootHandler.handleChild()", 4L)
+                .containsEntry("org.brylex.PathParserTest$TestSubHandler.grandchild", 2L)
+                .containsEntry("org.brylex.PathParserTest$TestSubHandler.uncle", 2L);
+        assertThat(metrics.getInvocationNanos()).containsOnlyKeys(metrics.getInvocations().keySet());
+        assertThat(metrics.getBytesRead()).isZero();
+
+        java.nio.file.Path file = Files.createTempFile("path-parser", ".xml");
+        try {
+            Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+            parser.parse(file, new TestRootHandler());
+        } finally {
+            Files.delete(file);
+        }
+        PushParser push = parser.push(new TestRootHandler());
+        push.feed(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)));
+        push.endOfInput();
+
+        assertThat(metrics.getBytesRead()).isEqualTo(2 * xml.length());
+    }
+
+    @Test
+    public void testTypedValues() throws Exception {
+
+        String xml = "<order>" +
+                "<id> 42 </id>" +
+                "<sequence>-9223372036854775808</sequence>" +
+                "<rate>0.125</rate>" +
+                "<paid>true</paid>" +
+                "<amount>1234.50</amount>" +
+                "<created>2013-12-09T10:15:30Z</created>" +
+                "<status>SHIPPED</status>" +
+                "<quantity>7</quantity>" +
+                "<currency>nok</currency>" +
+                "<note></note>" +
+                "</order>";
+
+        TestTypedHandler handler = new TestTypedHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(handler.id).isEqualTo(42);
+        assertThat(handler.sequence).isEqualTo(Long.MIN_VALUE);
+        assertThat(handler.rate).isEqualTo(0.125);
+        assertThat(handler.paid).isTrue();
+        assertThat(handler.amount).isEqualTo(new BigDecimal("1234.50"));
+        assertThat(handler.created).isEqualTo(Instant.parse("2013-12-09T10:15:30Z"));
+        assertThat(handler.status).isEqualTo(TestStatus.SHIPPED);
+        assertThat(handler.quantity).isEqualTo(7);
+        assertThat(handler.currency).isEqualTo("NOK");
+        assertThat(handler.note).isNull();
+    }
+
+    @Test
+    public void testCompiledPlanIsSharedPerHandlerClass() throws Exception {
+
+        BindingPlan plan = PathParser.compile(TestRootHandler.class);
+        assertThat(PathParser.compile(TestRootHandler.class)).isSameAs(plan);
+
+        for (String grandchild : new String[]{"A", "B"}) {
+
+            String xml = "<xml><child><grandchild>" + grandchild + "</grandchild></child></xml>";
+
+            TestRootHandler handler = new TestRootHandler();
+
+            try (Reader reader = new StringReader(xml)) {
+
+                XMLEventReader xmlEventReader = XMLInputFactory.newInstance().createXMLEventReader(reader);
+
+                plan.bind(handler).parse(xmlEventReader);
+            }
+
+            assertThat(handler.children).hasSize(1);
+            assertThat(handler.children.get(0).grandchild).isEqualTo(grandchild);
+        }
+    }
+
+    @Test
+    public void testGeneratedBindings() throws Exception {
+
+        String xml = "<xml><child>A</child><count> 3 </count><child>B</child></xml>";
+
+        TestGeneratedHandler handler = new TestGeneratedHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(TestGeneratedHandler.PathBindings.used).isTrue();
+        assertThat(handler.child).isEqualTo("B");
+        assertThat(handler.count).isEqualTo(3);
+        assertThat(handler.starts).isEqualTo(1);
+    }
+
+    @Test
+    public void testTextWithoutStrings() throws Exception {
+
+        String xml = "<xml><id>A-1</id><id>B-22</id><name>Ann</name></xml>";
+
+        TestCharsHandler handler = new TestCharsHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(handler.idLengths).isEqualTo(7);
+        assertThat(handler.lastId).isEqualTo("B-22");
+        assertThat(handler.nameMatched).isTrue();
+        assertThat(handler.name).isEqualTo("Ann");
+    }
+
+    @Test
+    public void testInternedText() throws Exception {
+
+        String xml = "<orders>" +
+                "<order><currency>NOK</currency><note>a</note></order>" +
+                "<order><currency>EUR</currency><note>a</note></order>" +
+                "<order><currency>NOK</currency><note>a</note></order>" +
+                "</orders>";
+
+        TestOrdersHandler handler = new TestOrdersHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(handler.orders).hasSize(3);
+        assertThat(handler.orders.get(0).currency).isEqualTo("NOK").isSameAs(handler.orders.get(2).currency);
+        assertThat(handler.orders.get(1).currency).isEqualTo("EUR");
+        assertThat(handler.orders.get(0).note).isEqualTo("a").isNotSameAs(handler.orders.get(2).note);
+    }
+
+    @Test
+    public void testReusedSubHandler() throws Exception {
+
+        String xml = "<orders>" +
+                "<order><id>1</id><currency>NOK</currency></order>" +
+                "<order><id>2</id></order>" +
+                "<order><currency>EUR</currency></order>" +
+                "</orders>";
+
+        TestReusingHandler handler = new TestReusingHandler();
+
+        try (Reader reader = new StringReader(xml)) {
+
+            XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+
+            new PathParser(handler).parse(xmlStreamReader);
+        }
+
+        assertThat(handler.orders).containsExactly("1 NOK", "2 null", "0 EUR");
+        assertThat(handler.instances).hasSize(1);
+    }
+
     public static class TestParserHandler {
 
         @Path("/xml/child")
@@ -147,6 +892,201 @@ public class PathParserTest {
         }
     }
 
+    public static class TestNestedHandler {
+
+        @Path("/xml/child")
+        public String child;
+
+        @Path("/xml/pet/dog/child")
+        public String dogChild;
+    }
+
+    public static class TestPredicateHandler {
+
+        @Path("/menu/food[@id='FRUIT']")
+        public String fruit;
+
+        @Path("/menu/food[2]")
+        public String second;
+
+        @Path("/menu/food[@id='BREAD' and @lang='fr']")
+        public String frenchBread;
+
+        @Path("/menu/food[@id='BREAD']")
+        public String bread;
+
+        @Path("/menu/food[@spicy]")
+        public String spicy;
+
+        @Path("/menu/food[@{urn:nutrition}kcal='0']")
+        public String water;
+
+        @Path("/menu/food")
+        public String other;
+    }
+
+    public static class TestWildcardHandler {
+
+        public final List<String> sections = new ArrayList<>();
+        public final List<String> items = new ArrayList<>();
+        public final List<String> prices = new ArrayList<>();
+        public final List<String> euros = new ArrayList<>();
+
+        @Path("/feed/*")
+        public void handleSection(StartElement element) {
+            sections.add(element.getName().getLocalPart());
+        }
+
+        @Path("//item")
+        public void setItem(String item) {
+            items.add(item);
+        }
+
+        @Path("/feed/*/price")
+        public void setPrice(String price) {
+            prices.add(price);
+        }
+
+        @Path("/feed//price[@currency='EUR']")
+        public void setEuro(String price) {
+            euros.add(price);
+        }
+    }
+
+    public static class TestCountHandler {
+
+        public int children;
+
+        @Path("/xml/food")
+        public String food;
+
+        @Path("/xml/child")
+        public void handleChild(EndElement element) {
+            children++;
+        }
+    }
+
+    public static class TestSubHandlerPaths {
+
+        @Path("/xml/child/uncle")
+        public String uncle;
+    }
+
+    public static class TestOnceHandler {
+
+        @Path(value = "/envelope/header/id", once = true)
+        public int id;
+
+        @Path(value = "/envelope/header/from", once = true)
+        public String from;
+    }
+
+    public static class TestEventHandler {
+
+        public final List<String> events = new ArrayList<>();
+        public final List<TestSubHandler> children = new ArrayList<>();
+
+        @Path("/xml/food[@id='FRUIT']")
+        public String fruit;
+
+        @Path("/xml")
+        public void handleXml(StartElement element) {
+            events.add("<" + element.getName().getLocalPart() + ">");
+        }
+
+        @Path("/xml")
+        public void handleXml(EndElement element) {
+            events.add("</" + element.getName().getLocalPart() + ">");
+        }
+
+        @Path("/xml/food[@id='FRUIT']")
+        public void handleFood(StartElement element) {
+            events.add("<" + element.getName().getLocalPart() + " id='" + element.getAttributeByName(new QName("id")).getValue() + "'>");
+        }
+
+        @Path("/xml/food[@id='FRUIT']")
+        public void handleFood(EndElement element) {
+            events.add("</" + element.getName().getLocalPart() + ">");
+        }
+
+        @Path("/xml/child")
+        public void handleChild(TestSubHandler handler) {
+            children.add(handler);
+        }
+    }
+
+    public enum TestStatus {
+        OPEN, SHIPPED
+    }
+
+    public static class UpperCaseConverter implements Converter<String> {
+
+        @Override
+        public String convert(char[] buffer, int start, int length) {
+            return new String(buffer, start, length).toUpperCase();
+        }
+    }
+
+    public static class TestTypedHandler {
+
+        @Path("/order/id")
+        public int id;
+
+        @Path("/order/sequence")
+        public long sequence;
+
+        @Path("/order/rate")
+        public double rate;
+
+        @Path("/order/paid")
+        public boolean paid;
+
+        @Path("/order/amount")
+        public BigDecimal amount;
+
+        @Path("/order/created")
+        public Instant created;
+
+        @Path("/order/status")
+        public TestStatus status;
+
+        @Path(value = "/order/currency", converter = UpperCaseConverter.class)
+        public String currency;
+
+        @Path("/order/note")
+        public Integer note;
+
+        public int quantity;
+
+        @Path("/order/quantity")
+        public void setQuantity(int quantity) {
+            this.quantity = quantity;
+        }
+    }
+
+    public static class TestTreeHandler {
+
+        public final List<TestTreeNode> nodes = new ArrayList<>();
+
+        @Path("/tree/node")
+        public void add(TestTreeNode node) {
+            nodes.add(node);
+        }
+    }
+
+    public static class TestTreeNode {
+
+        public final List<TestTreeNode> nodes = new ArrayList<>();
+
+        @Path("/name")
+        public String name;
+
+        @Path("/node")
+        public void add(TestTreeNode node) {
+            nodes.add(node);
+        }
+    }
+
     public static class TestRootHandler {
 
         public final List<TestSubHandler> children = new ArrayList<>();
@@ -166,4 +1106,151 @@ public class PathParserTest {
         public String uncle;
 
     }
+
+    public static class TestCharsHandler {
+
+        int idLengths;
+        String lastId;
+        boolean nameMatched;
+
+        @Path("/xml/name")
+        public String name;
+
+        @Path("/xml/id")
+        public void id(char[] buffer, int start, int length) {
+            idLengths += length;
+            lastId = new String(buffer, start, length);
+        }
+
+        @Path("/xml/name")
+        public void name(CharSequence name) {
+            nameMatched = "Ann".contentEquals(name);
+        }
+    }
+
+    public static class TestOrdersHandler {
+
+        public final List<TestOrder> orders = new ArrayList<>();
+
+        @Path("/orders/order")
+        public void order(TestOrder order) {
+            orders.add(order);
+        }
+    }
+
+    public static class TestOrder {
+
+        @Path(value = "/currency", intern = true)
+        public String currency;
+
+        @Path("/note")
+        public String note;
+    }
+
+    public static class TestReusingHandler {
+
+        public final List<String> orders = new ArrayList<>();
+        public final Set<TestReusedOrder> instances = ConcurrentHashMap.newKeySet();
+
+        @Path(value = "/orders/order", reuse = true)
+        public void order(TestReusedOrder order) {
+            orders.add(order.id + " " + order.currency);
+            instances.add(order);
+        }
+    }
+
+    public static class TestReusedOrder {
+
+        @Path("/id")
+        public int id;
+
+        @Path("/currency")
+        public String currency;
+    }
+
+    public static class TestIdHandler {
+
+        final List<String> items = new ArrayList<>();
+
+        /**
+         * Binds one path with a value predicate for each of a hundred ids from {@code first}, as a handler with that
+         * many annotated methods would.
+         */
+        static void bind(Binder binder, Class<?> type, int first) {
+            for (int id = first; id < first + 100; id++) {
+                String value = String.valueOf(id);
+                binder.method("/feed/item[@id='" + value + "']", 0, type.getName() + ".item" + value + "()", String.class, null, (handler, text) -> ((TestIdHandler) handler).items.add(value + "=" + text));
+            }
+        }
+
+        public static final class PathBindings implements org.brylex.parser.PathBindings {
+
+            @Override
+            public Class<?> getType() {
+                return TestIdHandler.class;
+            }
+
+            @Override
+            public void bind(Binder binder) {
+                TestIdHandler.bind(binder, TestIdHandler.class, 0);
+            }
+        }
+    }
+
+    public static class TestOtherIdHandler extends TestIdHandler {
+
+        public static final class PathBindings implements org.brylex.parser.PathBindings {
+
+            @Override
+            public Class<?> getType() {
+                return TestOtherIdHandler.class;
+            }
+
+            @Override
+            public void bind(Binder binder) {
+                TestIdHandler.bind(binder, TestOtherIdHandler.class, 50);
+            }
+        }
+    }
+
+    public static class TestGeneratedHandler {
+
+        @Path("/xml/child")
+        String child;
+
+        int count;
+
+        int starts;
+
+        @Path("/xml/count")
+        void setCount(int count) {
+            this.count = count;
+        }
+
+        @Path("/xml")
+        void start(StartElement element) {
+            starts++;
+        }
+
+        /**
+         * As generated by the annotation processor, and registered in the test resources.
+         */
+        public static final class PathBindings implements org.brylex.parser.PathBindings {
+
+            static volatile boolean used;
+
+            @Override
+            public Class<?> getType() {
+                return TestGeneratedHandler.class;
+            }
+
+            @Override
+            public void bind(Binder binder) {
+                used = true;
+                binder.field("/xml/child", 0, "org.brylex.PathParserTest$TestGeneratedHandler.child", String.class, null, (handler, value) -> ((TestGeneratedHandler) handler).child = (String) value);
+                binder.intMethod("/xml/count", 0, "org.brylex.PathParserTest$TestGeneratedHandler.setCount()", (handler, value) -> ((TestGeneratedHandler) handler).setCount(value));
+                binder.method("/xml", 0, "org.brylex.PathParserTest$TestGeneratedHandler.start()", StartElement.class, null, (handler, value) -> ((TestGeneratedHandler) handler).start((StartElement) value));
+            }
+        }
+    }
 }